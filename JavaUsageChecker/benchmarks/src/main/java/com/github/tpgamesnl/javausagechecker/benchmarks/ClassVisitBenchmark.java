@@ -0,0 +1,115 @@
+package com.github.tpgamesnl.javausagechecker.benchmarks;
+
+import com.github.tpgamesnl.javausagechecker.ClassLocation;
+import com.github.tpgamesnl.javausagechecker.JavaUsageChecker;
+import com.github.tpgamesnl.javausagechecker.ParsingMode;
+import com.github.tpgamesnl.javausagechecker.UsageCheckerCV;
+import com.github.tpgamesnl.javausagechecker.UsageListener;
+import org.objectweb.asm.ClassReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cost of visiting a single class with a {@link UsageCheckerCV}, per {@link ParsingMode}.
+ * <p>
+ * JDK classes have frames and debug information like most real classes, synthetic ones only have line numbers.
+ * The {@code none} listener measures parsing alone, the {@code checker} listener includes checking a few queries.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ClassVisitBenchmark {
+
+    private static final String[] JDK_CLASSES = {
+            "java/lang/String", "java/lang/Integer", "java/util/ArrayList", "java/util/HashMap",
+            "java/util/concurrent/ConcurrentHashMap", "java/util/regex/Pattern", "java/io/File",
+            "java/util/stream/Collectors",
+    };
+
+    private static final UsageListener NO_OP_LISTENER = new UsageListener() {
+        @Override
+        public void reportMethodAccess(ClassLocation.Method method, int lineNumber, int opcode, String owner, String name, String descriptor, boolean isInterface) {
+        }
+
+        @Override
+        public void reportFieldAccess(ClassLocation.Method method, int lineNumber, int opcode, String owner, String name, String descriptor) {
+        }
+
+        @Override
+        public void reportClassUsage(ClassLocation parent, ClassLocation.Kind kind, int number, String name) {
+        }
+    };
+
+    @Param({"jdk", "synthetic"})
+    public String classes;
+
+    @Param({"FULL", "SKIP_FRAMES", "CLASS_LEVEL"})
+    public ParsingMode parsingMode;
+
+    @Param({"none", "checker"})
+    public String listener;
+
+    private final List<byte[]> classFiles = new ArrayList<>();
+    private UsageListener usageListener;
+    private int index;
+
+    @Setup
+    public void setup() throws IOException {
+        if (classes.equals("jdk")) {
+            for (String className : JDK_CLASSES) {
+                classFiles.add(readClass(className));
+            }
+        } else {
+            SyntheticCorpus corpus = new SyntheticCorpus(1, 8, 20, 50);
+            Random random = new Random(0);
+            for (int i = 0; i < 8; i++) {
+                classFiles.add(corpus.generateClass(0, "synthetic/Class" + i, random));
+            }
+        }
+
+        usageListener = listener.equals("none") ? NO_OP_LISTENER : Queries.createChecker(report -> { });
+    }
+
+    private static byte[] readClass(String className) throws IOException {
+        try (InputStream inputStream = Object.class.getResourceAsStream("/" + className + ".class")) {
+            if (inputStream == null)
+                throw new IOException("Class " + className + " not found");
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    @Benchmark
+    public void visit() {
+        byte[] classFile = classFiles.get(index++ % classFiles.size());
+        ClassReader classReader = new ClassReader(classFile);
+        classReader.accept(new UsageCheckerCV(null, usageListener, "benchmark.jar", classReader.getClassName()),
+                parsingMode.getClassReaderFlags());
+    }
+
+}
@@ -0,0 +1,48 @@
+package com.github.tpgamesnl.javausagechecker.benchmarks;
+
+import com.github.tpgamesnl.javausagechecker.JavaUsageChecker;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cost of {@link JavaUsageChecker#formatClassName(String)}, called for every visited owner and class name
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FormatClassNameBenchmark {
+
+    private final String[] internalNames = {
+            "java/lang/String",
+            "java/util/ArrayList",
+            "java/util/concurrent/ConcurrentHashMap",
+            "org/bukkit/entity/Player",
+            "org/bukkit/event/player/PlayerJoinEvent",
+            "ch/njol/skript/lang/Effect",
+            "ch/njol/skript/Skript.class",
+            "com/google/gson/internal/bind/TypeAdapters$EnumTypeAdapter.class",
+    };
+
+    @Benchmark
+    @OperationsPerInvocation(8)
+    public void formatClassName(Blackhole blackhole) {
+        for (String internalName : internalNames) {
+            blackhole.consume(JavaUsageChecker.formatClassName(internalName));
+        }
+    }
+
+}
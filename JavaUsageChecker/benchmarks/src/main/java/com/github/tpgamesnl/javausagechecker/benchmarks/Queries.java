@@ -0,0 +1,40 @@
+package com.github.tpgamesnl.javausagechecker.benchmarks;
+
+import com.github.tpgamesnl.javausagechecker.JavaUsageChecker;
+import com.github.tpgamesnl.javausagechecker.query.ClassQuery;
+import com.github.tpgamesnl.javausagechecker.query.FieldQuery;
+import com.github.tpgamesnl.javausagechecker.query.MethodQuery;
+import com.github.tpgamesnl.javausagechecker.query.StringCheck;
+import com.github.tpgamesnl.javausagechecker.report.ReportSink;
+
+/**
+ * The queries used by the benchmarks, resembling the queries of a typical addon check
+ */
+public class Queries {
+
+    public static JavaUsageChecker.Builder builder(ReportSink reportSink) {
+        return JavaUsageChecker.builder()
+                .uses(new MethodQuery(
+                        new StringCheck(StringCheck.Method.EXACT, "java.lang.String"),
+                        new StringCheck(StringCheck.Method.EXACT, "format"),
+                        StringCheck.getTautology()))
+                .uses(new MethodQuery(
+                        new StringCheck(StringCheck.Method.CONTAINS_WORD, "Skript"),
+                        new StringCheck(StringCheck.Method.CONTAINS, "register"),
+                        StringCheck.getTautology()))
+                .uses(new FieldQuery(
+                        new StringCheck(StringCheck.Method.CONTAINS, "java.lang.System"),
+                        new StringCheck(StringCheck.Method.EXACT, "out"),
+                        StringCheck.getTautology()))
+                .uses(new ClassQuery(new StringCheck(StringCheck.Method.CONTAINS_WORD, "bukkit")))
+                .reportSink(reportSink);
+    }
+
+    /**
+     * Creates a checker that is only used as the listener of visited classes
+     */
+    public static JavaUsageChecker createChecker(ReportSink reportSink) {
+        return builder(reportSink).create();
+    }
+
+}
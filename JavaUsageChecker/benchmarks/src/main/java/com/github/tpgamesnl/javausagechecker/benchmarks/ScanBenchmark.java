@@ -0,0 +1,83 @@
+package com.github.tpgamesnl.javausagechecker.benchmarks;
+
+import com.github.tpgamesnl.javausagechecker.JavaUsageChecker;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * End-to-end scans of a synthetic corpus, in classes per second.
+ * A thread count of {@code 0} uses one thread per available processor.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ScanBenchmark {
+
+    private static final int JARS = 20;
+    private static final int CLASSES_PER_JAR = 250;
+    private static final int CLASSES = JARS * CLASSES_PER_JAR;
+
+    @Param({"1", "4", "0"})
+    public int threads;
+
+    @Param({"forkjoin", "threads"})
+    public String scheduler;
+
+    private File directory;
+    private List<File> jarFiles;
+    private final LongAdder reportCount = new LongAdder();
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("javausagechecker-benchmark").toFile();
+        jarFiles = new SyntheticCorpus(JARS, CLASSES_PER_JAR, 20, 50).write(directory);
+        if (threads == 0) {
+            threads = Runtime.getRuntime().availableProcessors();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        for (File jarFile : jarFiles) {
+            jarFile.delete();
+        }
+        directory.delete();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CLASSES)
+    public long scan() {
+        reportCount.reset();
+        Queries.builder(report -> reportCount.increment())
+                .scans(jarFiles.toArray(new File[0]))
+                .threadCount(threads)
+                .scheduler(scheduler.equals("forkjoin") ? JavaUsageChecker.FORK_JOIN_SCHEDULER : JavaUsageChecker.THREAD_SCHEDULER)
+                .create()
+                .start()
+                .join();
+        return reportCount.sum();
+    }
+
+}
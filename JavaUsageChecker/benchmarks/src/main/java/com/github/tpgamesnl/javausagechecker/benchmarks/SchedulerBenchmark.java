@@ -0,0 +1,71 @@
+package com.github.tpgamesnl.javausagechecker.benchmarks;
+
+import com.github.tpgamesnl.javausagechecker.JavaUsageChecker;
+import com.github.tpgamesnl.javausagechecker.worker.Scheduler;
+import com.github.tpgamesnl.javausagechecker.worker.Task;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The overhead of handing tasks to the worker threads, like jar files forking a task per class.
+ * Subtasks only burn a few CPU cycles, so the scheduler and its queues dominate.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SchedulerBenchmark {
+
+    private static final int TASKS = 64;
+    private static final int SUBTASKS = 256;
+
+    @Param({"forkjoin", "threads"})
+    public String scheduler;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    @Param({"100"})
+    public int subtaskWork;
+
+    private Scheduler.Factory schedulerFactory;
+
+    @Setup
+    public void setup() {
+        schedulerFactory = scheduler.equals("forkjoin") ? JavaUsageChecker.FORK_JOIN_SCHEDULER : JavaUsageChecker.THREAD_SCHEDULER;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TASKS * SUBTASKS)
+    public void forkSubtasks() {
+        Scheduler scheduler = schedulerFactory.create(threads, 1024);
+        for (int i = 0; i < TASKS; i++) {
+            scheduler.submit(() -> {
+                List<Task> subtasks = new ArrayList<>(SUBTASKS);
+                for (int j = 0; j < SUBTASKS; j++) {
+                    subtasks.add(() -> Blackhole.consumeCPU(subtaskWork));
+                }
+                scheduler.fork(subtasks);
+            });
+        }
+        scheduler.join();
+    }
+
+}
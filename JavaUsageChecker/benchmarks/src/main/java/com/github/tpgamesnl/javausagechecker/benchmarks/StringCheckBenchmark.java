@@ -0,0 +1,65 @@
+package com.github.tpgamesnl.javausagechecker.benchmarks;
+
+import com.github.tpgamesnl.javausagechecker.query.StringCheck;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cost of a single {@link StringCheck#match(String)} against typical class names, in internal form like while scanning
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StringCheckBenchmark {
+
+    static final String[] CLASS_NAMES = {
+            "java/lang/String",
+            "java/util/ArrayList",
+            "java/util/concurrent/ConcurrentHashMap",
+            "org/bukkit/entity/Player",
+            "org/bukkit/event/player/PlayerJoinEvent",
+            "ch/njol/skript/lang/Effect",
+            "ch/njol/skript/Skript",
+            "com/google/gson/internal/bind/TypeAdapters$EnumTypeAdapter",
+    };
+
+    @Param({"EXACT", "CONTAINS", "CONTAINS_WORD", "CONTAINS_IGNORE_CASE", "REGEX", "GLOB"})
+    public StringCheck.Method method;
+
+    @Param({"Skript", "org.bukkit"})
+    public String query;
+
+    private StringCheck stringCheck;
+
+    @Setup
+    public void setup() {
+        stringCheck = new StringCheck(method, query).toInternalForm();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(8)
+    public int match() {
+        int matches = 0;
+        for (String className : CLASS_NAMES) {
+            if (stringCheck.match(className))
+                matches++;
+        }
+        return matches;
+    }
+
+}
@@ -0,0 +1,174 @@
+package com.github.tpgamesnl.javausagechecker.benchmarks;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+/**
+ * Generates jar files full of classes with many method invocations, field accesses and class usages,
+ * so benchmarks don't depend on any downloaded jars.
+ * <p>
+ * The generated classes are never loaded, their bytecode doesn't need to pass verification.
+ * A corpus only depends on its parameters, so the same parameters always give the same corpus.
+ */
+public class SyntheticCorpus {
+
+    /**
+     * Members used by the generated code, besides the generated classes themselves
+     */
+    private static final String[][] METHODS = {
+            {"java/lang/String", "format", "(Ljava/lang/String;[Ljava/lang/Object;)Ljava/lang/String;"},
+            {"java/lang/StringBuilder", "append", "(Ljava/lang/String;)Ljava/lang/StringBuilder;"},
+            {"java/lang/StringBuilder", "toString", "()Ljava/lang/String;"},
+            {"java/util/ArrayList", "<init>", "()V"},
+            {"java/util/List", "add", "(Ljava/lang/Object;)Z"},
+            {"java/util/Map", "get", "(Ljava/lang/Object;)Ljava/lang/Object;"},
+            {"java/util/Objects", "requireNonNull", "(Ljava/lang/Object;)Ljava/lang/Object;"},
+            {"java/io/PrintStream", "println", "(Ljava/lang/String;)V"},
+            {"org/bukkit/Bukkit", "getServer", "()Lorg/bukkit/Server;"},
+            {"ch/njol/skript/Skript", "registerEffect", "(Ljava/lang/Class;[Ljava/lang/String;)V"},
+    };
+    private static final String[][] FIELDS = {
+            {"java/lang/System", "out", "Ljava/io/PrintStream;"},
+            {"java/lang/System", "err", "Ljava/io/PrintStream;"},
+            {"java/util/concurrent/TimeUnit", "SECONDS", "Ljava/util/concurrent/TimeUnit;"},
+            {"ch/njol/skript/Skript", "instance", "Lch/njol/skript/Skript;"},
+    };
+    private static final String[] TYPES = {
+            "java/lang/String", "java/util/ArrayList", "java/util/HashMap", "java/lang/Runnable",
+            "org/bukkit/entity/Player", "ch/njol/skript/lang/Effect", "com/google/gson/Gson",
+    };
+
+    private final int jarCount;
+    private final int classesPerJar;
+    private final int methodsPerClass;
+    private final int instructionsPerMethod;
+
+    public SyntheticCorpus(int jarCount, int classesPerJar, int methodsPerClass, int instructionsPerMethod) {
+        this.jarCount = jarCount;
+        this.classesPerJar = classesPerJar;
+        this.methodsPerClass = methodsPerClass;
+        this.instructionsPerMethod = instructionsPerMethod;
+    }
+
+    public int getClassCount() {
+        return jarCount * classesPerJar;
+    }
+
+    /**
+     * Writes the jar files into the given directory
+     *
+     * @return the written jar files
+     */
+    public List<File> write(File directory) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs())
+            throw new IOException("Cannot create " + directory);
+
+        List<File> jarFiles = new ArrayList<>();
+        for (int jar = 0; jar < jarCount; jar++) {
+            File jarFile = new File(directory, "synthetic-" + jar + ".jar");
+            Random random = new Random(jar);
+            try (JarOutputStream out = new JarOutputStream(new FileOutputStream(jarFile))) {
+                for (int i = 0; i < classesPerJar; i++) {
+                    String className = getClassName(jar, i);
+                    out.putNextEntry(new JarEntry(className + ".class"));
+                    out.write(generateClass(jar, className, random));
+                    out.closeEntry();
+                }
+            }
+            jarFiles.add(jarFile);
+        }
+        return jarFiles;
+    }
+
+    /**
+     * @return a class file with usages chosen by the given random
+     */
+    public byte[] generateClass(int jar, String className, Random random) {
+        ClassWriter classWriter = new ClassWriter(0);
+        String superName = random.nextInt(4) == 0 ? "java/util/ArrayList" : "java/lang/Object";
+        String[] interfaces = random.nextBoolean() ? new String[]{"java/lang/Runnable"} : null;
+        classWriter.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, className, null, superName, interfaces);
+
+        for (int i = 0; i < 4; i++) {
+            String type = TYPES[random.nextInt(TYPES.length)];
+            classWriter.visitField(Opcodes.ACC_PRIVATE, "field" + i, "L" + type + ";", null, null).visitEnd();
+        }
+
+        for (int i = 0; i < methodsPerClass; i++) {
+            String parameterType = TYPES[random.nextInt(TYPES.length)];
+            String descriptor = "(L" + parameterType + ";I)V";
+            MethodVisitor mv = classWriter.visitMethod(Opcodes.ACC_PUBLIC, "method" + i, descriptor, null, null);
+            mv.visitCode();
+            for (int j = 0; j < instructionsPerMethod; j++) {
+                Label label = new Label();
+                mv.visitLabel(label);
+                mv.visitLineNumber(i * instructionsPerMethod + j + 1, label);
+                generateInstruction(mv, jar, random);
+            }
+            mv.visitInsn(Opcodes.RETURN);
+            mv.visitMaxs(4, 3);
+            mv.visitEnd();
+        }
+
+        classWriter.visitEnd();
+        return classWriter.toByteArray();
+    }
+
+    private void generateInstruction(MethodVisitor mv, int jar, Random random) {
+        switch (random.nextInt(6)) {
+            case 0:
+            case 1: {
+                String[] method = METHODS[random.nextInt(METHODS.length)];
+                int opcode = method[1].equals("<init>") ? Opcodes.INVOKESPECIAL : Opcodes.INVOKEVIRTUAL;
+                mv.visitMethodInsn(opcode, method[0], method[1], method[2], method[0].equals("java/util/List")
+                        || method[0].equals("java/util/Map"));
+                break;
+            }
+            case 2: {
+                // Calls between the generated classes of the same jar
+                String owner = getClassName(jar, random.nextInt(classesPerJar));
+                mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, owner, "method" + random.nextInt(methodsPerClass),
+                        "(Ljava/lang/String;I)V", false);
+                break;
+            }
+            case 3: {
+                String[] field = FIELDS[random.nextInt(FIELDS.length)];
+                mv.visitFieldInsn(Opcodes.GETSTATIC, field[0], field[1], field[2]);
+                break;
+            }
+            case 4:
+                mv.visitTypeInsn(Opcodes.CHECKCAST, TYPES[random.nextInt(TYPES.length)]);
+                break;
+            default:
+                mv.visitLdcInsn(Type.getObjectType(TYPES[random.nextInt(TYPES.length)]));
+                break;
+        }
+    }
+
+    private static String getClassName(int jar, int index) {
+        return "synthetic/jar" + jar + "/package" + (index % 16) + "/Class" + index;
+    }
+
+    @Override
+    public String toString() {
+        return "SyntheticCorpus{" +
+                "jarCount=" + jarCount +
+                ", classesPerJar=" + classesPerJar +
+                ", methodsPerClass=" + methodsPerClass +
+                ", instructionsPerMethod=" + instructionsPerMethod +
+                '}';
+    }
+
+}
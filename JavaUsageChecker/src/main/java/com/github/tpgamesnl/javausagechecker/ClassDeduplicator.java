@@ -0,0 +1,158 @@
+package com.github.tpgamesnl.javausagechecker;
+
+import com.github.tpgamesnl.javausagechecker.cache.JarSymbols;
+import com.github.tpgamesnl.javausagechecker.jar.MappedJarFile;
+import com.github.tpgamesnl.javausagechecker.worker.PerThread;
+import org.jetbrains.annotations.Nullable;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers the usages matching the queries in every distinct class checked, so identical copies of it in other jar
+ * files, like shaded libraries, are {@link JarSymbols#replay(UsageListener, String, boolean) replayed} instead of
+ * being parsed again.
+ * <p>
+ * Classes are identified by their entry name, uncompressed size and CRC-32 from the central directory,
+ * as a quick first check, confirmed by the SHA-256 of their contents, as a CRC-32 is easily forged.
+ * Classes must be {@link MappedJarFile#readVerified(MappedJarFile.Entry, MappedJarFile.Buffers) read}
+ * and checked against their CRC-32 before being looked up or remembered. Only the matching usages are kept,
+ * not all usages of a class.
+ */
+public class ClassDeduplicator {
+
+    /**
+     * Shared by all classes without matching usages, which are most classes
+     */
+    private static final JarSymbols NO_MATCHES = new JarSymbols(false);
+
+    private final JavaUsageChecker javaUsageChecker;
+    private final Map<Key, JarSymbols> classes = new ConcurrentHashMap<>();
+    private final PerThread<MessageDigest> digests = PerThread.cache(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform supports SHA-256
+            throw new RuntimeException(e);
+        }
+    });
+
+    public ClassDeduplicator(JavaUsageChecker javaUsageChecker) {
+        this.javaUsageChecker = javaUsageChecker;
+    }
+
+    /**
+     * @param entry an entry of which the contents have been verified against its CRC-32
+     * @param contents the contents of the entry, in its first {@link MappedJarFile.Entry#getSize()} bytes
+     * @return the key identifying the class, for {@link #get(Key)} and {@link #put(Key, Recorder)}
+     */
+    public Key createKey(MappedJarFile.Entry entry, byte[] contents) {
+        MessageDigest digest = digests.get();
+        digest.update(contents, 0, entry.getSize());
+        return new Key(entry, digest.digest());
+    }
+
+    /**
+     * @return the matching usages of an identical class checked before, or {@code null} if there is none
+     */
+    @Nullable
+    public JarSymbols get(Key key) {
+        return classes.get(key);
+    }
+
+    /**
+     * @param delegate the listener to pass the matching usages on to
+     * @return a listener recording the matching usages of a single class for {@link #put(Key, Recorder)}
+     */
+    public Recorder createRecorder(UsageListener delegate) {
+        return new Recorder(javaUsageChecker, delegate);
+    }
+
+    /**
+     * Remembers the matching usages of a class once it has been checked completely
+     */
+    public void put(Key key, Recorder recorder) {
+        JarSymbols matches = recorder.recorder.isEmpty() ? NO_MATCHES : JarSymbols.of(recorder.recorder, true);
+        classes.putIfAbsent(key, matches);
+    }
+
+    public int getClassCount() {
+        return classes.size();
+    }
+
+    @Override
+    public String toString() {
+        return "ClassDeduplicator{" +
+                "classes=" + classes.size() +
+                '}';
+    }
+
+    /**
+     * Records only the usages matching a query, while passing them on to another listener.
+     * Not thread-safe: every class should be recorded by its own recorder.
+     */
+    public static class Recorder implements UsageListener {
+
+        private final JavaUsageChecker javaUsageChecker;
+        private final JarSymbols.Recorder recorder;
+
+        private Recorder(JavaUsageChecker javaUsageChecker, UsageListener delegate) {
+            this.javaUsageChecker = javaUsageChecker;
+            this.recorder = new JarSymbols.Recorder(delegate);
+        }
+
+        @Override
+        public void reportMethodAccess(ClassLocation.Method method, int lineNumber, int opcode, String owner, String name, String descriptor, boolean isInterface) {
+            if (!javaUsageChecker.matchMethodAccess(opcode, owner, name, descriptor, isInterface).isEmpty())
+                recorder.reportMethodAccess(method, lineNumber, opcode, owner, name, descriptor, isInterface);
+        }
+
+        @Override
+        public void reportFieldAccess(ClassLocation.Method method, int lineNumber, int opcode, String owner, String name, String descriptor) {
+            if (!javaUsageChecker.matchFieldAccess(opcode, owner, name, descriptor).isEmpty())
+                recorder.reportFieldAccess(method, lineNumber, opcode, owner, name, descriptor);
+        }
+
+        @Override
+        public void reportClassUsage(ClassLocation parent, ClassLocation.Kind kind, int number, String name) {
+            if (!javaUsageChecker.matchClassUsage(name).isEmpty())
+                recorder.reportClassUsage(parent, kind, number, name);
+        }
+
+    }
+
+    /**
+     * Identifies a class by its entry name, size, CRC-32 and SHA-256
+     */
+    public static class Key {
+        private final String name;
+        private final int size;
+        private final int crc;
+        private final byte[] sha256;
+
+        private Key(MappedJarFile.Entry entry, byte[] sha256) {
+            this.name = entry.getName();
+            this.size = entry.getSize();
+            this.crc = entry.getCrc();
+            this.sha256 = sha256;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            // The CRC-32 rules out nearly all other classes, the SHA-256 the forged ones
+            return size == key.size && crc == key.crc && Arrays.equals(sha256, key.sha256) && name.equals(key.name);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * name.hashCode() + size) + crc;
+        }
+    }
+
+}
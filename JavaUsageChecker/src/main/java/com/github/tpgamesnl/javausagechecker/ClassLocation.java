@@ -1,7 +1,75 @@
 package com.github.tpgamesnl.javausagechecker;
 
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A location within a jar file.
+ * <p>
+ * Locations are only created for usages matching a query: the class, field and method locations are shared
+ * by all usages within them, and the narrower locations are {@link #locate(Kind, int) derived} from those on a match.
+ */
 public class ClassLocation {
 
+    /**
+     * The different kinds of locations, one for every (sub)class
+     */
+    public enum Kind {
+        CLASS,
+        EXTENDS_CLASS,
+        IMPLEMENTS_CLASS,
+        FIELD,
+        METHOD,
+        PARAMETER,
+        RETURN_TYPE,
+        CODE;
+
+        /**
+         * @return the kind of the shared location that locations of this kind are {@link #locate(Kind, int) derived} from
+         */
+        public Kind getParentKind() {
+            switch (this) {
+                case FIELD:
+                case METHOD:
+                    return this;
+                case PARAMETER:
+                case RETURN_TYPE:
+                case CODE:
+                    return METHOD;
+                default:
+                    return CLASS;
+            }
+        }
+    }
+
+    /**
+     * Creates a location of the given kind, the inverse of {@link #getKind()} and the getters of the subclasses.
+     *
+     * @param memberName the field name for {@link Kind#FIELD}, or the method name for method kinds
+     * @param methodDescriptor the method descriptor for method kinds
+     * @param number the line number for {@link Kind#CODE}, or the parameter index for {@link Kind#PARAMETER}
+     */
+    public static ClassLocation create(Kind kind, String jarFileName, String className,
+                                       @Nullable String memberName, @Nullable String methodDescriptor, int number) {
+        switch (kind) {
+            case EXTENDS_CLASS:
+                return new ExtendsClass(jarFileName, className);
+            case IMPLEMENTS_CLASS:
+                return new ImplementsClass(jarFileName, className);
+            case FIELD:
+                return new Field(jarFileName, className, memberName);
+            case METHOD:
+                return new Method(jarFileName, className, memberName, methodDescriptor);
+            case PARAMETER:
+                return new Method.Parameter(jarFileName, className, memberName, methodDescriptor, number);
+            case RETURN_TYPE:
+                return new Method.ReturnType(jarFileName, className, memberName, methodDescriptor);
+            case CODE:
+                return new Method.Code(jarFileName, className, memberName, methodDescriptor, number);
+            default:
+                return new ClassLocation(jarFileName, className);
+        }
+    }
+
     protected final String jarFileName;
     protected final String className;
 
@@ -18,6 +86,30 @@ public String getClassName() {
         return className;
     }
 
+    public Kind getKind() {
+        return Kind.CLASS;
+    }
+
+    /**
+     * Derives the location of the given kind within this location.
+     *
+     * @param number the line number for {@link Kind#CODE}, or the parameter index for {@link Kind#PARAMETER}
+     * @return this location if it is of the given kind already
+     * @throws IllegalArgumentException if this location can't contain a location of the given kind
+     */
+    public ClassLocation locate(Kind kind, int number) {
+        if (kind == getKind())
+            return this;
+        switch (kind) {
+            case EXTENDS_CLASS:
+                return extendsClass();
+            case IMPLEMENTS_CLASS:
+                return implementsClass();
+            default:
+                throw new IllegalArgumentException("No " + kind + " location within " + getKind() + " location");
+        }
+    }
+
     @Override
     public String toString() {
         return "File: " + jarFileName + " in class " + className;
@@ -33,6 +125,33 @@ private Method(String jarFileName, String className, String methodName, String m
             this.methodDescriptor = methodDescriptor;
         }
 
+        public String getMethodName() {
+            return methodName;
+        }
+
+        public String getMethodDescriptor() {
+            return methodDescriptor;
+        }
+
+        @Override
+        public Kind getKind() {
+            return Kind.METHOD;
+        }
+
+        @Override
+        public ClassLocation locate(Kind kind, int number) {
+            switch (kind) {
+                case PARAMETER:
+                    return inParameter(number);
+                case RETURN_TYPE:
+                    return inReturnType();
+                case CODE:
+                    return inCode(number);
+                default:
+                    return super.locate(kind, number);
+            }
+        }
+
         @Override
         public String toString() {
             return super.toString() + " in method " + methodName + " (" + methodDescriptor + ")";
@@ -46,6 +165,18 @@ private Code(String jarFileName, String className, String methodName, String met
                 this.lineNumber = lineNumber;
             }
 
+            /**
+             * @return the line number, or {@code -1} if unknown
+             */
+            public int getLineNumber() {
+                return lineNumber;
+            }
+
+            @Override
+            public Kind getKind() {
+                return Kind.CODE;
+            }
+
             @Override
             public String toString() {
                 return super.toString() + " on line " + lineNumber;
@@ -64,6 +195,15 @@ private Parameter(String jarFileName, String className, String methodName, Strin
                 this.index = index;
             }
 
+            public int getIndex() {
+                return index;
+            }
+
+            @Override
+            public Kind getKind() {
+                return Kind.PARAMETER;
+            }
+
             @Override
             public String toString() {
                 return super.toString() + " in parameter " + index;
@@ -79,6 +219,11 @@ private ReturnType(String jarFileName, String className, String methodName, Stri
                 super(jarFileName, className, methodName, methodDescriptor);
             }
 
+            @Override
+            public Kind getKind() {
+                return Kind.RETURN_TYPE;
+            }
+
             @Override
             public String toString() {
                 return super.toString() + " in return type";
@@ -102,6 +247,15 @@ public Field(String jarFileName, String className, String name) {
             this.name = name;
         }
 
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public Kind getKind() {
+            return Kind.FIELD;
+        }
+
         @Override
         public String toString() {
             return super.toString() + " in field + " + name;
@@ -117,6 +271,11 @@ public ExtendsClass(String jarFileName, String className) {
             super(jarFileName, className);
         }
 
+        @Override
+        public Kind getKind() {
+            return Kind.EXTENDS_CLASS;
+        }
+
         @Override
         public String toString() {
             return super.toString() + " in extending class";
@@ -132,6 +291,11 @@ public ImplementsClass(String jarFileName, String className) {
             super(jarFileName, className);
         }
 
+        @Override
+        public Kind getKind() {
+            return Kind.IMPLEMENTS_CLASS;
+        }
+
         @Override
         public String toString() {
             return super.toString() + " in implementing class";
@@ -0,0 +1,108 @@
+package com.github.tpgamesnl.javausagechecker;
+
+import com.github.tpgamesnl.javausagechecker.worker.Scheduler;
+import com.github.tpgamesnl.javausagechecker.worker.Task;
+
+import java.io.IOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Walks a directory, submitting a {@link JarFileTask} for every jar file as soon as it is found.
+ * <p>
+ * When {@link JavaUsageChecker.Builder#parallelWalk(boolean) walking in parallel}, every subdirectory is walked
+ * by its own task instead, submitted to the same scheduler.
+ * Symbolic links are followed, but every directory is only walked once.
+ */
+public class DirectoryWalkTask implements Task {
+
+    private final JavaUsageChecker javaUsageChecker;
+    private final Scheduler scheduler;
+    private final Path directory;
+    /**
+     * The keys of the directories walked so far, shared by all tasks of a scan
+     */
+    private final Set<Object> walkedDirectories;
+
+    public DirectoryWalkTask(JavaUsageChecker javaUsageChecker, Scheduler scheduler, Path directory,
+                             Set<Object> walkedDirectories) {
+        this.javaUsageChecker = javaUsageChecker;
+        this.scheduler = scheduler;
+        this.directory = directory;
+        this.walkedDirectories = walkedDirectories;
+    }
+
+    @Override
+    public void perform() {
+        try {
+            Files.walkFileTree(directory, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    if (javaUsageChecker.isCancelled())
+                        return FileVisitResult.TERMINATE;
+
+                    // Not all file systems have keys, links can't be tracked there.
+                    //  The directory of this task was added already if it was submitted by another walk
+                    Object key = attrs.fileKey();
+                    boolean added = key == null || walkedDirectories.add(key);
+                    if (dir.equals(directory))
+                        return FileVisitResult.CONTINUE;
+                    if (!added)
+                        return FileVisitResult.SKIP_SUBTREE;
+
+                    if (javaUsageChecker.isParallelWalk()) {
+                        javaUsageChecker.directoryWalkAdded();
+                        scheduler.submit(new DirectoryWalkTask(javaUsageChecker, scheduler, dir, walkedDirectories));
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (javaUsageChecker.isCancelled())
+                        return FileVisitResult.TERMINATE;
+                    try {
+                        if (attrs.isRegularFile() && javaUsageChecker.getArchiveFilter().accept(file)) {
+                            javaUsageChecker.jarFileFound(file.toFile());
+                        }
+                    } catch (IOException e) {
+                        skipped(file, e);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    skipped(file, e);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            skipped(directory, e);
+        } finally {
+            javaUsageChecker.directoryWalkFinished();
+        }
+    }
+
+    /**
+     * Records a file or directory that couldn't be read, so part of the tree may have been skipped
+     */
+    private void skipped(Path path, IOException e) {
+        javaUsageChecker.entrySkipped(new ScanError(ScanError.Kind.UNREADABLE, path.toString(), null, e.toString(), e));
+    }
+
+    @Override
+    public String toString() {
+        return "DirectoryWalkTask{" +
+                "directory=" + directory +
+                '}';
+    }
+
+}
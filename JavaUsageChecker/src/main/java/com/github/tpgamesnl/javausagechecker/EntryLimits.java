@@ -0,0 +1,223 @@
+package com.github.tpgamesnl.javausagechecker;
+
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The limits on every entry of a jar file, so a single malformed or huge class can't stall a worker or exhaust the heap.
+ * <p>
+ * The size is checked before an entry is inflated, for classes as well as nested jar files.
+ * The instructions and time are checked while a class is being visited, by the visitor {@link #limit(ClassVisitor, long) wrapping}
+ * the usage checker, which stops visiting by throwing a {@link LimitExceededException}.
+ * Entries exceeding a limit are skipped and recorded as a {@link ScanError}, the usages found in them before are still reported.
+ */
+public class EntryLimits {
+
+    /**
+     * The default maximum uncompressed size of an entry, far above that of any real class file
+     */
+    public static final int DEFAULT_MAX_SIZE = 64 * 1024 * 1024;
+    public static final EntryLimits DEFAULT = new EntryLimits(DEFAULT_MAX_SIZE, 0, 0);
+
+    /**
+     * The amount of instructions between checking the time
+     */
+    private static final int TIME_CHECK_INTERVAL = 256;
+
+    private final int maxSize;
+    private final int maxInstructions;
+    private final long timeoutMillis;
+
+    /**
+     * @param maxSize the maximum uncompressed size of an entry in bytes, {@code 0} for no limit
+     * @param maxInstructions the maximum amount of instructions in all methods of a class, {@code 0} for no limit
+     * @param timeoutMillis the maximum time checking a single class may take, {@code 0} for no limit
+     */
+    public EntryLimits(int maxSize, int maxInstructions, long timeoutMillis) {
+        this.maxSize = maxSize;
+        this.maxInstructions = maxInstructions;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public int getMaxInstructions() {
+        return maxInstructions;
+    }
+
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    /**
+     * @param size the uncompressed size of an entry
+     * @return whether an entry of the given size may be read
+     */
+    public boolean allowsSize(int size) {
+        return maxSize <= 0 || size <= maxSize;
+    }
+
+    /**
+     * @param startNanos the {@link System#nanoTime()} checking the class started at
+     * @return the given visitor, wrapped to enforce the instruction and time limits if there are any
+     */
+    public ClassVisitor limit(ClassVisitor classVisitor, long startNanos) {
+        if (maxInstructions <= 0 && timeoutMillis <= 0)
+            return classVisitor;
+        return new LimitingClassVisitor(classVisitor, startNanos);
+    }
+
+    @Override
+    public String toString() {
+        return "EntryLimits{" +
+                "maxSize=" + maxSize +
+                ", maxInstructions=" + maxInstructions +
+                ", timeoutMillis=" + timeoutMillis +
+                '}';
+    }
+
+    /**
+     * Thrown while visiting a class exceeding a limit, to stop visiting it
+     */
+    static class LimitExceededException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        private final ScanError.Kind kind;
+
+        LimitExceededException(ScanError.Kind kind, String message) {
+            super(message);
+            this.kind = kind;
+        }
+
+        ScanError.Kind getKind() {
+            return kind;
+        }
+
+    }
+
+    private class LimitingClassVisitor extends ClassVisitor {
+
+        private final long deadlineNanos;
+        private int instructions;
+
+        private LimitingClassVisitor(ClassVisitor classVisitor, long startNanos) {
+            super(Opcodes.ASM9, classVisitor);
+            this.deadlineNanos = startNanos + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+            checkTime();
+            MethodVisitor mv = super.visitMethod(access, name, descriptor, signature, exceptions);
+            return mv == null ? null : new LimitingMethodVisitor(mv);
+        }
+
+        private void instruction() {
+            if (++instructions > maxInstructions && maxInstructions > 0)
+                throw new LimitExceededException(ScanError.Kind.TOO_MANY_INSTRUCTIONS, "over " + maxInstructions + " instructions");
+            if (instructions % TIME_CHECK_INTERVAL == 0)
+                checkTime();
+        }
+
+        private void checkTime() {
+            if (timeoutMillis > 0 && System.nanoTime() - deadlineNanos > 0)
+                throw new LimitExceededException(ScanError.Kind.TIMED_OUT, "over " + timeoutMillis + " ms");
+        }
+
+        private class LimitingMethodVisitor extends MethodVisitor {
+
+            private LimitingMethodVisitor(MethodVisitor methodVisitor) {
+                super(Opcodes.ASM9, methodVisitor);
+            }
+
+            @Override
+            public void visitInsn(int opcode) {
+                instruction();
+                super.visitInsn(opcode);
+            }
+
+            @Override
+            public void visitIntInsn(int opcode, int operand) {
+                instruction();
+                super.visitIntInsn(opcode, operand);
+            }
+
+            @Override
+            public void visitVarInsn(int opcode, int varIndex) {
+                instruction();
+                super.visitVarInsn(opcode, varIndex);
+            }
+
+            @Override
+            public void visitTypeInsn(int opcode, String type) {
+                instruction();
+                super.visitTypeInsn(opcode, type);
+            }
+
+            @Override
+            public void visitFieldInsn(int opcode, String owner, String name, String descriptor) {
+                instruction();
+                super.visitFieldInsn(opcode, owner, name, descriptor);
+            }
+
+            @Override
+            public void visitMethodInsn(int opcode, String owner, String name, String descriptor, boolean isInterface) {
+                instruction();
+                super.visitMethodInsn(opcode, owner, name, descriptor, isInterface);
+            }
+
+            @Override
+            public void visitInvokeDynamicInsn(String name, String descriptor, Handle bootstrapMethodHandle, Object... bootstrapMethodArguments) {
+                instruction();
+                super.visitInvokeDynamicInsn(name, descriptor, bootstrapMethodHandle, bootstrapMethodArguments);
+            }
+
+            @Override
+            public void visitJumpInsn(int opcode, Label label) {
+                instruction();
+                super.visitJumpInsn(opcode, label);
+            }
+
+            @Override
+            public void visitLdcInsn(Object value) {
+                instruction();
+                super.visitLdcInsn(value);
+            }
+
+            @Override
+            public void visitIincInsn(int varIndex, int increment) {
+                instruction();
+                super.visitIincInsn(varIndex, increment);
+            }
+
+            @Override
+            public void visitTableSwitchInsn(int min, int max, Label dflt, Label... labels) {
+                instruction();
+                super.visitTableSwitchInsn(min, max, dflt, labels);
+            }
+
+            @Override
+            public void visitLookupSwitchInsn(Label dflt, int[] keys, Label[] labels) {
+                instruction();
+                super.visitLookupSwitchInsn(dflt, keys, labels);
+            }
+
+            @Override
+            public void visitMultiANewArrayInsn(String descriptor, int numDimensions) {
+                instruction();
+                super.visitMultiANewArrayInsn(descriptor, numDimensions);
+            }
+
+        }
+
+    }
+
+}
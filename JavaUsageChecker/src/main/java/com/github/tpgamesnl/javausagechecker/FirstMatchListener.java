@@ -0,0 +1,96 @@
+package com.github.tpgamesnl.javausagechecker;
+
+import com.github.tpgamesnl.javausagechecker.query.Query;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Reports only the first usages found in a single jar file, see {@link MatchMode}.
+ * Shared by all classes of the jar file, so usages may be passed from multiple threads at once.
+ */
+class FirstMatchListener implements UsageListener {
+
+    private final JavaUsageChecker javaUsageChecker;
+    private final boolean perQuery;
+
+    private final AtomicBoolean reported = new AtomicBoolean();
+    private final Set<Query> reportedQueries = ConcurrentHashMap.newKeySet();
+    private volatile boolean done;
+
+    /**
+     * @param matchMode either {@link MatchMode#FIRST_PER_JAR} or {@link MatchMode#FIRST_PER_QUERY}
+     */
+    FirstMatchListener(JavaUsageChecker javaUsageChecker, MatchMode matchMode) {
+        this.javaUsageChecker = javaUsageChecker;
+        this.perQuery = matchMode == MatchMode.FIRST_PER_QUERY;
+    }
+
+    /**
+     * @return whether no usages of this jar file are left to report
+     */
+    boolean isDone() {
+        return done;
+    }
+
+    /**
+     * @return the given matches that haven't been reported in this jar file yet, marking them as reported
+     */
+    private List<Query> claim(List<Query> matches) {
+        if (!perQuery) {
+            if (!reported.compareAndSet(false, true))
+                return Collections.emptyList();
+            done = true;
+            return matches.subList(0, 1);
+        }
+
+        List<Query> claimed = new ArrayList<>(matches.size());
+        for (Query query : matches) {
+            if (reportedQueries.add(query))
+                claimed.add(query);
+        }
+        if (reportedQueries.size() == javaUsageChecker.getQueries().size())
+            done = true;
+        return claimed;
+    }
+
+    @Override
+    public void reportMethodAccess(ClassLocation.Method method, int lineNumber, int opcode, String owner, String name, String descriptor, boolean isInterface) {
+        if (done)
+            return;
+        List<Query> matches = javaUsageChecker.matchMethodAccess(opcode, owner, name, descriptor, isInterface);
+        if (!matches.isEmpty())
+            javaUsageChecker.reportMatches(method, ClassLocation.Kind.CODE, lineNumber, claim(matches));
+    }
+
+    @Override
+    public void reportFieldAccess(ClassLocation.Method method, int lineNumber, int opcode, String owner, String name, String descriptor) {
+        if (done)
+            return;
+        List<Query> matches = javaUsageChecker.matchFieldAccess(opcode, owner, name, descriptor);
+        if (!matches.isEmpty())
+            javaUsageChecker.reportMatches(method, ClassLocation.Kind.CODE, lineNumber, claim(matches));
+    }
+
+    @Override
+    public void reportClassUsage(ClassLocation parent, ClassLocation.Kind kind, int number, String name) {
+        if (done)
+            return;
+        List<Query> matches = javaUsageChecker.matchClassUsage(name);
+        if (!matches.isEmpty())
+            javaUsageChecker.reportMatches(parent, kind, number, claim(matches));
+    }
+
+    @Override
+    public String toString() {
+        return "FirstMatchListener{" +
+                "perQuery=" + perQuery +
+                ", done=" + done +
+                '}';
+    }
+
+}
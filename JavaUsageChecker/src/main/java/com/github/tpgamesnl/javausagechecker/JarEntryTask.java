@@ -1,41 +1,127 @@
 package com.github.tpgamesnl.javausagechecker;
 
+import com.github.tpgamesnl.javausagechecker.cache.JarSymbols;
+import com.github.tpgamesnl.javausagechecker.jar.MappedJarFile;
+import com.github.tpgamesnl.javausagechecker.metrics.ScanMetrics;
+import com.github.tpgamesnl.javausagechecker.query.ConstantPoolFilter;
 import com.github.tpgamesnl.javausagechecker.worker.Task;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassVisitor;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.util.jar.JarEntry;
-import java.util.jar.JarFile;
 
 public class JarEntryTask implements Task {
 
-    private final JavaUsageChecker javaUsageChecker;
-    private final JarFile jarFile;
-    private final JarEntry jarEntry;
+    private final JarScan jarScan;
+    private final MappedJarFile.Entry jarEntry;
 
-    public JarEntryTask(JavaUsageChecker javaUsageChecker, JarFile jarFile, JarEntry jarEntry) {
-        this.javaUsageChecker = javaUsageChecker;
-        this.jarFile = jarFile;
+    public JarEntryTask(JarScan jarScan, MappedJarFile.Entry jarEntry) {
+        this.jarScan = jarScan;
         this.jarEntry = jarEntry;
     }
 
     @Override
     public void perform() {
+        long start = System.nanoTime();
+        JavaUsageChecker javaUsageChecker = jarScan.getJavaUsageChecker();
+        ScanMetrics metrics = javaUsageChecker.getMetrics();
+        if (jarScan.isMatchingDone() || javaUsageChecker.isCancelled()) {
+            // Nothing left to report in this jar file, or the scan is stopping, so the class isn't even read
+            finishUnread(javaUsageChecker);
+            return;
+        }
+
+        MappedJarFile jarFile = jarScan.getJarFile();
+        EntryLimits entryLimits = javaUsageChecker.getEntryLimits();
+        if (!entryLimits.allowsSize(jarEntry.getSize())) {
+            jarScan.entrySkipped(new ScanError(ScanError.Kind.TOO_LARGE, jarFile.getName(), jarEntry.getName(),
+                    jarEntry.getSize() + " bytes, over " + entryLimits.getMaxSize(), null));
+            finishUnread(javaUsageChecker);
+            return;
+        }
+
+        ClassDeduplicator classDeduplicator = javaUsageChecker.getClassDeduplicator();
+        JarSymbols jarSymbols = jarScan.getJarSymbols();
+        JarSymbols.Recorder recorder = jarSymbols == null ? null : new JarSymbols.Recorder(jarScan.getUsageListener());
+        ClassDeduplicator.Recorder matchRecorder = null;
+        boolean deduplicated = false;
+
         try {
-            InputStream inputStream = jarFile.getInputStream(jarEntry);
+            // Only valid until this thread reads the next entry.
+            //  Classes are only deduplicated once their contents are known to match their CRC-32,
+            //  and are identified by their SHA-256 too
+            MappedJarFile.Buffers buffers = javaUsageChecker.getReadBuffers();
+            byte[] classFile = classDeduplicator == null
+                    ? jarFile.read(jarEntry, buffers)
+                    : jarFile.readVerified(jarEntry, buffers);
+            int classFileLength = jarEntry.getSize();
+
+            ClassDeduplicator.Key deduplicatorKey = null;
+            if (classDeduplicator != null) {
+                deduplicatorKey = classDeduplicator.createKey(jarEntry, classFile);
+                JarSymbols matches = classDeduplicator.get(deduplicatorKey);
+                if (matches != null) {
+                    // An identical class has been checked before, in this or another jar file
+                    matches.replay(jarScan.getUsageListener(), jarFile.getName(), false);
+                    deduplicated = true;
+                    return;
+                }
+                matchRecorder = classDeduplicator.createRecorder(jarScan.getUsageListener());
+            }
 
-            String className = JavaUsageChecker.formatClassName(jarEntry.getName());
+            // Only visit the class fully if its constant pool references anything the queries could match,
+            //  unless all usages are being recorded
+            ConstantPoolFilter constantPoolFilter = javaUsageChecker.getConstantPoolFilter();
+            if (recorder != null || constantPoolFilter == null || constantPoolFilter.mayMatch(classFile, 0, classFileLength)) {
+                String className = JavaUsageChecker.formatClassName(jarEntry.getName());
 
-            ClassReader classReader = new ClassReader(inputStream);
+                ClassReader classReader = new ClassReader(classFile, 0, classFileLength);
 
-            ClassVisitor usageCheckerCV = new UsageCheckerCV(null, javaUsageChecker, jarFile.getName(), className);
-            classReader.accept(usageCheckerCV, 0);
+                UsageListener usageListener = recorder != null ? recorder
+                        : matchRecorder != null ? matchRecorder : jarScan.getUsageListener();
+                ClassVisitor usageCheckerCV = entryLimits.limit(new UsageCheckerCV(null, usageListener, jarFile.getName(), className), start);
+                classReader.accept(usageCheckerCV, javaUsageChecker.getParsingMode().getClassReaderFlags());
+            }
+
+            if (matchRecorder != null) {
+                classDeduplicator.put(deduplicatorKey, matchRecorder);
+            }
         } catch (IOException e) {
-            new RuntimeException(e).printStackTrace();
+            jarScan.entrySkipped(new ScanError(ScanError.Kind.UNREADABLE, jarFile.getName(), jarEntry.getName(), e.toString(), e));
+        } catch (EntryLimits.LimitExceededException e) {
+            jarScan.entrySkipped(new ScanError(e.getKind(), jarFile.getName(), jarEntry.getName(), e.getMessage(), null));
+        } catch (RuntimeException | StackOverflowError e) {
+            // ASM throws all kinds of exceptions for malformed or unsupported class files
+            jarScan.entrySkipped(new ScanError(ScanError.Kind.MALFORMED, jarFile.getName(), jarEntry.getName(), e.toString(), e));
+        } finally {
+            if (jarSymbols != null) {
+                jarSymbols.add(recorder);
+            }
+            jarScan.entryFinished();
+
+            javaUsageChecker.getStateTracker().incrementClassesCheckedCount();
+            metrics.classChecked(jarEntry.getSize());
+            if (deduplicated) {
+                metrics.classDeduplicated();
+            }
+            metrics.addWorkerBusyNanos(System.nanoTime() - start);
         }
+    }
 
+    /**
+     * Finishes this entry without having read it
+     */
+    private void finishUnread(JavaUsageChecker javaUsageChecker) {
+        jarScan.entryFinished();
         javaUsageChecker.getStateTracker().incrementClassesCheckedCount();
+        javaUsageChecker.getMetrics().addClassesChecked(1);
+    }
+
+    @Override
+    public String toString() {
+        return "JarEntryTask{" +
+                "jarFile=" + jarScan.getJarFile().getName() +
+                ", jarEntry=" + jarEntry +
+                '}';
     }
 }
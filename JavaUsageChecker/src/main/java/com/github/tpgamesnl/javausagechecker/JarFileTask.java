@@ -1,48 +1,188 @@
 package com.github.tpgamesnl.javausagechecker;
 
+import com.github.tpgamesnl.javausagechecker.cache.JarSymbols;
+import com.github.tpgamesnl.javausagechecker.cache.ScanCache;
+import com.github.tpgamesnl.javausagechecker.jar.ArchiveFilter;
+import com.github.tpgamesnl.javausagechecker.jar.MappedJarFile;
+import com.github.tpgamesnl.javausagechecker.metrics.ScanMetrics;
+import com.github.tpgamesnl.javausagechecker.worker.Scheduler;
 import com.github.tpgamesnl.javausagechecker.worker.Task;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.Enumeration;
-import java.util.Queue;
-import java.util.jar.JarEntry;
-import java.util.jar.JarFile;
+import java.util.ArrayList;
+import java.util.List;
 
+/**
+ * Opens a jar file, either on disk or nested in another jar file, and forks the tasks checking its classes.
+ * Nested jar files are scanned by their own {@link JarFileTask}s, submitted to the same scheduler.
+ */
 public class JarFileTask implements Task {
 
+    /**
+     * The maximum amount of jar files a scanned jar file can be nested in, against archives nesting themselves
+     */
+    public static final int MAX_NESTING_DEPTH = 8;
+
     private final JavaUsageChecker javaUsageChecker;
-    private final Queue<JarEntryTask> jarEntryTasks;
+    private final Scheduler scheduler;
 
+    @Nullable
     private final File file;
+    @Nullable
+    private final JarScan outerJarScan;
+    @Nullable
+    private final MappedJarFile.Entry nestedJarEntry;
 
-    public JarFileTask(JavaUsageChecker javaUsageChecker, Queue<JarEntryTask> jarEntryTasks, File file) {
+    public JarFileTask(JavaUsageChecker javaUsageChecker, Scheduler scheduler, File file) {
         this.javaUsageChecker = javaUsageChecker;
-        this.jarEntryTasks = jarEntryTasks;
+        this.scheduler = scheduler;
         this.file = file;
+        this.outerJarScan = null;
+        this.nestedJarEntry = null;
+    }
+
+    /**
+     * Creates a task for a jar file nested in the jar file of the given scan
+     */
+    public JarFileTask(JarScan outerJarScan, Scheduler scheduler, MappedJarFile.Entry nestedJarEntry) {
+        this.javaUsageChecker = outerJarScan.getJavaUsageChecker();
+        this.scheduler = scheduler;
+        this.file = null;
+        this.outerJarScan = outerJarScan;
+        this.nestedJarEntry = nestedJarEntry;
     }
 
     @Override
     public void perform() {
-        JarFile jarFile;
-        try {
-            jarFile = new JarFile(file);
+        long start = System.nanoTime();
+        StateTracker stateTracker = javaUsageChecker.getStateTracker();
+        ScanMetrics metrics = javaUsageChecker.getMetrics();
+        boolean lineNumbers = javaUsageChecker.getParsingMode() != ParsingMode.CLASS_LEVEL;
+
+        if (javaUsageChecker.isCancelled()) {
+            // Not opened at all, but done all the same
+            javaUsageChecker.jarFileTaskFinished();
+            if (outerJarScan != null) {
+                outerJarScan.entryFinished();
+            }
+            return;
+        }
 
-            Enumeration<JarEntry> enumeration = jarFile.entries();
-            while (enumeration.hasMoreElements()) {
-                JarEntry jarEntry = enumeration.nextElement();
+        ScanCache scanCache = javaUsageChecker.getScanCache();
+        JarSymbols cachedSymbols = scanCache == null || file == null ? null : scanCache.load(file, lineNumbers);
+        if (cachedSymbols != null) {
+            stateTracker.addClassesFoundCount(cachedSymbols.getClassCount());
+            stateTracker.incrementJarOpenedCount();
+            metrics.addClassesFound(cachedSymbols.getClassCount());
+            metrics.jarOpened();
+            javaUsageChecker.jarFileTaskFinished();
 
-                if (jarEntry.isDirectory() || !jarEntry.getName().endsWith(".class")) {
+            cachedSymbols.replay(javaUsageChecker.createJarUsageListener(), file.getPath(), !lineNumbers);
+            javaUsageChecker.jarFileRecorded(file.getPath(), file, cachedSymbols, true);
+            stateTracker.addClassesCheckedCount(cachedSymbols.getClassCount());
+            metrics.addClassesChecked(cachedSymbols.getClassCount());
+
+            long nanos = System.nanoTime() - start;
+            metrics.jarScanned(nanos);
+            metrics.addWorkerBusyNanos(nanos);
+            return;
+        }
+
+        List<JarEntryTask> jarEntryTasks = new ArrayList<>();
+        JarScan jarScan = null;
+        try {
+            MappedJarFile jarFile;
+            int depth;
+            if (outerJarScan == null) {
+                jarFile = MappedJarFile.open(file);
+                depth = 0;
+            } else {
+                jarFile = outerJarScan.getJarFile().openNested(nestedJarEntry, javaUsageChecker.getReadBuffers());
+                depth = outerJarScan.getDepth() + 1;
+            }
+            jarScan = new JarScan(javaUsageChecker, file, jarFile, depth,
+                    javaUsageChecker.isRecordingUsages() ? new JarSymbols(lineNumbers) : null);
+
+            for (MappedJarFile.Entry jarEntry : jarFile.getEntries()) {
+                if (jarEntry.isDirectory()) {
                     continue;
                 }
 
-                this.jarEntryTasks.add(new JarEntryTask(javaUsageChecker, jarFile, jarEntry));
+                if (jarEntry.getName().endsWith(".class")) {
+                    jarScan.entryAdded();
+                    jarEntryTasks.add(new JarEntryTask(jarScan, jarEntry));
+                    stateTracker.incrementClassesFoundCount();
+                } else if (ArchiveFilter.hasArchiveExtension(jarEntry.getName())) {
+                    if (depth == MAX_NESTING_DEPTH) {
+                        jarScan.entrySkipped(new ScanError(ScanError.Kind.NESTED_TOO_DEEP, jarFile.getName(), jarEntry.getName(),
+                                "nested over " + MAX_NESTING_DEPTH + " levels deep", null));
+                        continue;
+                    }
+
+                    EntryLimits entryLimits = javaUsageChecker.getEntryLimits();
+                    if (!entryLimits.allowsSize(jarEntry.getSize())) {
+                        jarScan.entrySkipped(new ScanError(ScanError.Kind.TOO_LARGE, jarFile.getName(), jarEntry.getName(),
+                                jarEntry.getSize() + " bytes, over " + entryLimits.getMaxSize(), null));
+                        continue;
+                    }
+
+                    jarScan.nestedJarAdded();
+                    javaUsageChecker.jarFileTaskAdded();
+                    scheduler.submit(new JarFileTask(jarScan, scheduler, jarEntry));
+                }
             }
         } catch (IOException e) {
-            new RuntimeException("Error creating JarFile from " + file.getName(), e).printStackTrace();
+            skipped(jarScan, ScanError.Kind.UNREADABLE, e);
+        } catch (RuntimeException e) {
+            // Malformed archives can have sizes and offsets out of any bounds
+            skipped(jarScan, ScanError.Kind.MALFORMED, e);
+        } finally {
+            stateTracker.incrementJarOpenedCount();
+            metrics.addClassesFound(jarEntryTasks.size());
+            metrics.jarOpened();
+            javaUsageChecker.jarFileTaskFinished();
+
+            // The outer jar file can only be closed once this nested one has been opened
+            if (outerJarScan != null) {
+                outerJarScan.entryFinished();
+            }
+        }
+
+        // Forking may run the entries on this thread, those count themselves
+        metrics.addWorkerBusyNanos(System.nanoTime() - start);
+
+        if (jarScan != null) {
+            scheduler.fork(jarEntryTasks);
+            jarScan.entryFinished();
         }
+    }
+
+    /**
+     * Records this jar file as skipped, as an entry of the outer jar file if it is nested.
+     * If it was opened already, its scan is marked incomplete instead, as some of its entries may have been added.
+     */
+    private void skipped(@Nullable JarScan jarScan, ScanError.Kind kind, Exception e) {
+        if (jarScan != null) {
+            jarScan.entrySkipped(new ScanError(kind, jarScan.getJarFile().getName(), null, e.toString(), e));
+        } else if (outerJarScan == null) {
+            javaUsageChecker.entrySkipped(new ScanError(kind, file.getPath(), null, e.toString(), e));
+        } else {
+            outerJarScan.entrySkipped(new ScanError(kind, outerJarScan.getJarFile().getName(),
+                    nestedJarEntry.getName(), e.toString(), e));
+        }
+    }
 
-        javaUsageChecker.getStateTracker().incrementJarOpenedCount();
+    private String getName() {
+        return file != null ? file.getName() : outerJarScan.getJarFile().getName() + "!/" + nestedJarEntry.getName();
+    }
+
+    @Override
+    public String toString() {
+        return "JarFileTask{" +
+                "file=" + getName() +
+                '}';
     }
 
 }
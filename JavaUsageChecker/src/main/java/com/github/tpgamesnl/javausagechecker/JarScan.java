@@ -0,0 +1,134 @@
+package com.github.tpgamesnl.javausagechecker;
+
+import com.github.tpgamesnl.javausagechecker.cache.JarSymbols;
+import com.github.tpgamesnl.javausagechecker.jar.MappedJarFile;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The state of a single jar file being scanned, shared by its {@link JarEntryTask}s.
+ * <p>
+ * Once all entries have been checked, the jar file is closed and its recorded symbols, if any, are passed on
+ * to the cache and index, unless any entries were skipped.
+ * Jar files nested in it count as entries, until they have been opened.
+ */
+public class JarScan {
+
+    private final JavaUsageChecker javaUsageChecker;
+    @Nullable
+    private final File file;
+    private final MappedJarFile jarFile;
+    private final int depth;
+    @Nullable
+    private final JarSymbols jarSymbols;
+    private final UsageListener usageListener;
+    private volatile boolean containsNestedJars;
+    /**
+     * Whether any entry has been skipped, so the recorded symbols don't cover the whole jar file
+     */
+    private volatile boolean incomplete;
+    private final long startNanos = System.nanoTime();
+
+    /**
+     * The amount of entries not yet checked, plus one held by the {@link JarFileTask} while it adds entries
+     */
+    private final AtomicInteger pendingEntries = new AtomicInteger(1);
+
+    /**
+     * @param file the jar file on disk, or {@code null} if it is nested in another jar file
+     * @param depth the amount of jar files this jar file is nested in
+     */
+    public JarScan(JavaUsageChecker javaUsageChecker, @Nullable File file, MappedJarFile jarFile, int depth,
+                   @Nullable JarSymbols jarSymbols) {
+        this.javaUsageChecker = javaUsageChecker;
+        this.file = file;
+        this.jarFile = jarFile;
+        this.depth = depth;
+        this.jarSymbols = jarSymbols;
+        this.usageListener = javaUsageChecker.createJarUsageListener();
+    }
+
+    public JavaUsageChecker getJavaUsageChecker() {
+        return javaUsageChecker;
+    }
+
+    public MappedJarFile getJarFile() {
+        return jarFile;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * @return the symbols to record the usages in, or {@code null} if usages aren't recorded
+     */
+    @Nullable
+    public JarSymbols getJarSymbols() {
+        return jarSymbols;
+    }
+
+    /**
+     * @return the listener to pass the usages found in this jar file to
+     */
+    public UsageListener getUsageListener() {
+        return usageListener;
+    }
+
+    /**
+     * @return whether the remaining classes can be skipped, as all usages to report have been found
+     * and usages aren't recorded
+     */
+    public boolean isMatchingDone() {
+        return jarSymbols == null && usageListener instanceof FirstMatchListener
+                && ((FirstMatchListener) usageListener).isDone();
+    }
+
+    void entryAdded() {
+        pendingEntries.incrementAndGet();
+    }
+
+    /**
+     * Called for every nested jar file, as an {@link #entryAdded() entry}.
+     * The usages of jar files with nested jar files aren't cached, as the cache only covers the outer jar file.
+     */
+    void nestedJarAdded() {
+        containsNestedJars = true;
+        entryAdded();
+    }
+
+    /**
+     * Called for every entry of this jar file skipped, before it is {@link #entryFinished() finished}.
+     * The symbols of jar files with skipped entries aren't cached or indexed, as they'd be replayed without the error,
+     * even though the entry might not be skipped next time, like ones that timed out.
+     */
+    void entrySkipped(ScanError error) {
+        incomplete = true;
+        javaUsageChecker.entrySkipped(error);
+    }
+
+    void entryFinished() {
+        if (pendingEntries.decrementAndGet() == 0) {
+            finish();
+        }
+    }
+
+    private void finish() {
+        jarFile.close();
+        javaUsageChecker.getMetrics().jarScanned(System.nanoTime() - startNanos);
+
+        if (jarSymbols != null && !incomplete) {
+            javaUsageChecker.jarFileRecorded(jarFile.getName(), containsNestedJars ? null : file, jarSymbols, false);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "JarScan{" +
+                "jarFile=" + jarFile.getName() +
+                '}';
+    }
+
+}
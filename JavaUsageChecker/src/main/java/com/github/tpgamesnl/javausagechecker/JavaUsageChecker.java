@@ -1,20 +1,54 @@
 package com.github.tpgamesnl.javausagechecker;
 
+import com.github.tpgamesnl.javausagechecker.cache.JarSymbols;
+import com.github.tpgamesnl.javausagechecker.cache.ScanCache;
+import com.github.tpgamesnl.javausagechecker.index.UsageIndex;
+import com.github.tpgamesnl.javausagechecker.index.UsageIndexWriter;
+import com.github.tpgamesnl.javausagechecker.jar.ArchiveFilter;
+import com.github.tpgamesnl.javausagechecker.jar.MappedJarFile;
+import com.github.tpgamesnl.javausagechecker.metrics.ScanMetrics;
+import com.github.tpgamesnl.javausagechecker.query.ConstantPoolFilter;
 import com.github.tpgamesnl.javausagechecker.query.Query;
-import com.github.tpgamesnl.javausagechecker.worker.WorkerCollection;
+import com.github.tpgamesnl.javausagechecker.query.QueryIndex;
+import com.github.tpgamesnl.javausagechecker.report.ReportAggregator;
+import com.github.tpgamesnl.javausagechecker.report.ReportCollector;
+import com.github.tpgamesnl.javausagechecker.report.ReportSink;
+import com.github.tpgamesnl.javausagechecker.worker.ForkJoinScheduler;
+import com.github.tpgamesnl.javausagechecker.worker.PerThread;
+import com.github.tpgamesnl.javausagechecker.worker.Scheduler;
+import com.github.tpgamesnl.javausagechecker.worker.ThreadScheduler;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Objects;
 import java.util.Queue;
-import java.util.stream.Collectors;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 // TODO javadocs
-public class JavaUsageChecker {
+public class JavaUsageChecker implements UsageListener {
+
+    /**
+     * Runs jar files on one set of threads and their classes on another
+     */
+    public static final Scheduler.Factory THREAD_SCHEDULER = (threadCount, queueCapacity) ->
+            new ThreadScheduler(threadCount, queueCapacity, "JarFile-opener-", "JarEntry-checker-");
+    /**
+     * Runs jar files and their classes on a single work-stealing pool
+     */
+    public static final Scheduler.Factory FORK_JOIN_SCHEDULER = (threadCount, queueCapacity) ->
+            new ForkJoinScheduler(threadCount);
 
     @SuppressWarnings("UnusedReturnValue")
     public static class Builder {
@@ -22,6 +56,21 @@ public static class Builder {
         private final List<File> files = new ArrayList<>();
         private final List<Query> queries = new ArrayList<>();
         private int threadCount = 1;
+        private int queueCapacity = 1024;
+        private int matchCacheSize = QueryIndex.DEFAULT_MATCH_CACHE_SIZE;
+        private Scheduler.Factory schedulerFactory = FORK_JOIN_SCHEDULER;
+        private ParsingMode parsingMode = ParsingMode.SKIP_FRAMES;
+        private MatchMode matchMode = MatchMode.ALL;
+        private ArchiveFilter archiveFilter = ArchiveFilter.EXTENSION;
+        private boolean parallelWalk;
+        private boolean deduplicateClasses = true;
+        private long timeoutMillis;
+        private int maxEntrySize = EntryLimits.DEFAULT_MAX_SIZE;
+        private int maxInstructions;
+        private long entryTimeoutMillis;
+        private ScanCache scanCache;
+        private File indexFile;
+        private ReportSink reportSink;
         private StateTracker stateTracker;
 
         private Builder() { }
@@ -41,13 +90,155 @@ public Builder threadCount(int threadCount) {
             return this;
         }
 
+        /**
+         * Sets the maximum amount of classes waiting to be checked,
+         * opening jars pauses while this amount is reached.
+         * Only used by schedulers with a queue between both, such as {@link #THREAD_SCHEDULER}.
+         */
+        public Builder queueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+            return this;
+        }
+
+        /**
+         * Sets the maximum amount of symbols of which the matching queries are cached per worker thread,
+         * {@code 0} to check every symbol against the queries. See {@link QueryIndex}.
+         */
+        public Builder matchCacheSize(int matchCacheSize) {
+            this.matchCacheSize = matchCacheSize;
+            return this;
+        }
+
+        public Builder scheduler(Scheduler.Factory schedulerFactory) {
+            this.schedulerFactory = schedulerFactory;
+            return this;
+        }
+
+        /**
+         * Runs the scan on the given pool, which is shared with other scans and not shut down once joined.
+         * Uses the {@link #FORK_JOIN_SCHEDULER}, ignoring the {@link #threadCount(int) thread count}.
+         */
+        public Builder pool(ForkJoinPool pool) {
+            this.schedulerFactory = (threadCount, queueCapacity) -> new ForkJoinScheduler(pool);
+            return this;
+        }
+
+        public Builder parsingMode(ParsingMode parsingMode) {
+            this.parsingMode = parsingMode;
+            return this;
+        }
+
+        /**
+         * Sets which usages found in every jar file are reported, {@link MatchMode#ALL} by default
+         */
+        public Builder matchMode(MatchMode matchMode) {
+            this.matchMode = matchMode;
+            return this;
+        }
+
+        /**
+         * Sets which files found in scanned directories are scanned, {@link ArchiveFilter#EXTENSION} by default.
+         * Files passed to {@link #scans(File...)} directly are always scanned.
+         */
+        public Builder archiveFilter(ArchiveFilter archiveFilter) {
+            this.archiveFilter = archiveFilter;
+            return this;
+        }
+
+        /**
+         * Walks every subdirectory of scanned directories in its own task, to list large trees faster
+         */
+        public Builder parallelWalk(boolean parallelWalk) {
+            this.parallelWalk = parallelWalk;
+            return this;
+        }
+
+        /**
+         * Checks identical copies of a class in different jar files only once, replaying its matching usages
+         * for the other copies, see {@link ClassDeduplicator}. Enabled by default, unless usages are recorded.
+         */
+        public Builder deduplicateClasses(boolean deduplicateClasses) {
+            this.deduplicateClasses = deduplicateClasses;
+            return this;
+        }
+
+        /**
+         * {@link JavaUsageChecker#cancel() Cancels} the scan once it has been running for the given time,
+         * {@code 0} to never time out
+         */
+        public Builder timeout(long timeout, TimeUnit unit) {
+            this.timeoutMillis = unit.toMillis(timeout);
+            return this;
+        }
+
+        /**
+         * Sets the maximum uncompressed size of classes and nested jar files, {@code 0} for no limit.
+         * Entries over it are skipped without being inflated, {@link EntryLimits#DEFAULT_MAX_SIZE} by default.
+         */
+        public Builder maxEntrySize(int maxEntrySize) {
+            this.maxEntrySize = maxEntrySize;
+            return this;
+        }
+
+        /**
+         * Sets the maximum amount of instructions in all methods of a class, {@code 0} for no limit, the default.
+         * Classes over it are skipped once the limit is reached.
+         */
+        public Builder maxInstructions(int maxInstructions) {
+            this.maxInstructions = maxInstructions;
+            return this;
+        }
+
+        /**
+         * Sets the maximum time checking a single class may take, {@code 0} for no limit, the default.
+         * Classes over it are skipped once their code is visited past the limit.
+         */
+        public Builder entryTimeout(long timeout, TimeUnit unit) {
+            this.entryTimeoutMillis = unit.toMillis(timeout);
+            return this;
+        }
+
+        /**
+         * Caches the usages of every jar file in the given directory,
+         * so jar files that haven't changed since a previous run don't have to be opened again.
+         * Jar files that aren't cached yet are checked fully, as queries can't skip any classes while recording usages.
+         */
+        public Builder cache(File directory) {
+            this.scanCache = new ScanCache(directory);
+            return this;
+        }
+
+        /**
+         * Writes a {@link UsageIndex} of all usages to the given file once {@link JavaUsageChecker#join() joined},
+         * which can answer queries without scanning again.
+         */
+        public Builder writeIndex(File indexFile) {
+            this.indexFile = indexFile;
+            return this;
+        }
+
+        /**
+         * Streams the reports to the given sink as they are found,
+         * instead of collecting them for {@link JavaUsageChecker#getReports()}.
+         * A {@link ReportAggregator} only counts the usages, without reports being created for them.
+         */
+        public Builder reportSink(ReportSink reportSink) {
+            this.reportSink = reportSink;
+            return this;
+        }
+
         public Builder stateTracker(StateTracker stateTracker) {
             this.stateTracker = stateTracker;
             return this;
         }
 
         public JavaUsageChecker create() {
-            return new JavaUsageChecker(files, queries, threadCount, stateTracker);
+            ReportSink reportSink = this.reportSink == null ? new ReportCollector() : this.reportSink;
+            StateTracker stateTracker = this.stateTracker == null ? StateTracker.silent() : this.stateTracker;
+            return new JavaUsageChecker(files, queries, threadCount, queueCapacity, matchCacheSize, schedulerFactory,
+                    parsingMode, matchMode, archiveFilter, parallelWalk, deduplicateClasses, timeoutMillis,
+                    new EntryLimits(maxEntrySize, maxInstructions, entryTimeoutMillis), scanCache, indexFile,
+                    reportSink, stateTracker);
         }
 
         public List<File> getFiles() {
@@ -62,6 +253,66 @@ public int getThreadCount() {
             return threadCount;
         }
 
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public int getMatchCacheSize() {
+            return matchCacheSize;
+        }
+
+        public Scheduler.Factory getSchedulerFactory() {
+            return schedulerFactory;
+        }
+
+        public ParsingMode getParsingMode() {
+            return parsingMode;
+        }
+
+        public MatchMode getMatchMode() {
+            return matchMode;
+        }
+
+        public ArchiveFilter getArchiveFilter() {
+            return archiveFilter;
+        }
+
+        public boolean isParallelWalk() {
+            return parallelWalk;
+        }
+
+        public boolean isDeduplicatingClasses() {
+            return deduplicateClasses;
+        }
+
+        public long getTimeoutMillis() {
+            return timeoutMillis;
+        }
+
+        public int getMaxEntrySize() {
+            return maxEntrySize;
+        }
+
+        public int getMaxInstructions() {
+            return maxInstructions;
+        }
+
+        public long getEntryTimeoutMillis() {
+            return entryTimeoutMillis;
+        }
+
+        public ScanCache getScanCache() {
+            return scanCache;
+        }
+
+        public File getIndexFile() {
+            return indexFile;
+        }
+
+        public ReportSink getReportSink() {
+            return reportSink;
+        }
+
         public StateTracker getStateTracker() {
             return stateTracker;
         }
@@ -72,6 +323,21 @@ public String toString() {
                     "files=" + files +
                     ", queries=" + queries +
                     ", threadCount=" + threadCount +
+                    ", queueCapacity=" + queueCapacity +
+                    ", matchCacheSize=" + matchCacheSize +
+                    ", schedulerFactory=" + schedulerFactory +
+                    ", parsingMode=" + parsingMode +
+                    ", matchMode=" + matchMode +
+                    ", archiveFilter=" + archiveFilter +
+                    ", parallelWalk=" + parallelWalk +
+                    ", deduplicateClasses=" + deduplicateClasses +
+                    ", timeoutMillis=" + timeoutMillis +
+                    ", maxEntrySize=" + maxEntrySize +
+                    ", maxInstructions=" + maxInstructions +
+                    ", entryTimeoutMillis=" + entryTimeoutMillis +
+                    ", scanCache=" + scanCache +
+                    ", indexFile=" + indexFile +
+                    ", reportSink=" + reportSink +
                     ", stateTracker=" + stateTracker +
                     '}';
         }
@@ -81,89 +347,408 @@ public static Builder builder() {
         return new Builder();
     }
 
+    /**
+     * Cancels the scans that {@link Builder#timeout(long, TimeUnit) time out}, shared by all scans
+     */
+    private static final ScheduledThreadPoolExecutor TIMEOUTS = new ScheduledThreadPoolExecutor(1, runnable -> {
+        Thread thread = new Thread(runnable, "JavaUsageChecker-timeouts");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        TIMEOUTS.setRemoveOnCancelPolicy(true);
+    }
+
     private final List<File> files;
     private final List<Query> queries;
-    private final List<Report> reports;
+    private final QueryIndex queryIndex;
+    @Nullable
+    private final ConstantPoolFilter constantPoolFilter;
+    private final ReportSink reportSink;
+    /**
+     * The report sink if it only counts usages, so no reports have to be created
+     */
+    @Nullable
+    private final ReportAggregator reportAggregator;
 
     private final int workerCount;
+    private final int queueCapacity;
+    private final Scheduler.Factory schedulerFactory;
+    private final ParsingMode parsingMode;
+    private final MatchMode matchMode;
+    private final ArchiveFilter archiveFilter;
+    private final boolean parallelWalk;
+    private final long timeoutMillis;
+    private final EntryLimits entryLimits;
+    /**
+     * The deduplicator of identical classes, or {@code null} if every class is checked
+     */
+    @Nullable
+    private final ClassDeduplicator classDeduplicator;
+    @Nullable
+    private final ScanCache scanCache;
+    @Nullable
+    private final File indexFile;
+    @Nullable
+    private final UsageIndexWriter indexWriter;
 
     private final StateTracker stateTracker;
-
-    private WorkerCollection<JarEntryTask> jarEntryTaskWorkerCollection;
-
-    public JavaUsageChecker(List<File> files, List<Query> queries, int workerCount, StateTracker stateTracker) {
+    private final ScanMetrics metrics;
+    private final Queue<ScanError> errors = new ConcurrentLinkedQueue<>();
+    /**
+     * Grow to the largest entry read, so they're held by this scan instead of the threads, which may outlive it
+     */
+    private final PerThread<MappedJarFile.Buffers> readBuffers = PerThread.of(MappedJarFile.Buffers::new);
+
+    /**
+     * The jar file tasks and directory walks not yet done, all jar files have been opened once none are left
+     */
+    private final AtomicInteger pendingJarFileTasks = new AtomicInteger();
+    private final Set<Object> walkedDirectories = ConcurrentHashMap.newKeySet();
+    private volatile Scheduler scheduler;
+    @Nullable
+    private volatile ScheduledFuture<?> timeout;
+    private volatile boolean cancelled;
+    private volatile boolean timedOut;
+
+    public JavaUsageChecker(List<File> files, List<Query> queries, int workerCount, int queueCapacity,
+                            int matchCacheSize, Scheduler.Factory schedulerFactory, ParsingMode parsingMode,
+                            MatchMode matchMode, ArchiveFilter archiveFilter, boolean parallelWalk,
+                            boolean deduplicateClasses, long timeoutMillis, EntryLimits entryLimits,
+                            @Nullable ScanCache scanCache, @Nullable File indexFile, ReportSink reportSink,
+                            StateTracker stateTracker) {
         this.files = files;
         this.queries = queries;
-        this.reports = new ArrayList<>();
+        this.queryIndex = new QueryIndex(queries, matchCacheSize);
+        this.constantPoolFilter = ConstantPoolFilter.create(queries);
+        this.reportSink = reportSink;
+        this.reportAggregator = reportSink instanceof ReportAggregator ? (ReportAggregator) reportSink : null;
         this.workerCount = workerCount;
+        this.queueCapacity = queueCapacity;
+        this.schedulerFactory = schedulerFactory;
+        this.parsingMode = parsingMode;
+        this.matchMode = matchMode;
+        this.archiveFilter = archiveFilter;
+        this.parallelWalk = parallelWalk;
+        this.timeoutMillis = timeoutMillis;
+        this.entryLimits = entryLimits;
+        this.scanCache = scanCache;
+        this.indexFile = indexFile;
+        this.indexWriter = indexFile == null ? null : new UsageIndexWriter();
+        // Recording needs all usages of every class, not only the matching ones
+        this.classDeduplicator = deduplicateClasses && !isRecordingUsages() ? new ClassDeduplicator(this) : null;
         this.stateTracker = stateTracker;
+        this.metrics = new ScanMetrics(queries);
     }
 
     public JavaUsageChecker start() {
-        // TODO remove
-        try {
-            Thread.sleep(3000);
-        } catch (InterruptedException e) {
-            throw new RuntimeException(e);
+        metrics.phaseStarted(ScanMetrics.Phase.OPENING_JARS);
+        stateTracker.setState(StateTracker.State.OPENING_JARS);
+        stateTracker.setTotalJarCount(0);
+
+        // Held while submitting, so not all jar files count as opened before all have been submitted
+        pendingJarFileTasks.set(1);
+
+        // Directories are walked while the jars found so far are being opened,
+        //  and jars are opened while the classes found so far are being checked
+        scheduler = schedulerFactory.create(workerCount, queueCapacity);
+        if (timeoutMillis > 0) {
+            timeout = TIMEOUTS.schedule(() -> {
+                timedOut = true;
+                cancel();
+            }, timeoutMillis, TimeUnit.MILLISECONDS);
         }
-
-        List<File> actualFiles = new ArrayList<>();
         for (File file : this.files) {
-            actualFiles.addAll(expandFile(file));
+            if (file.isDirectory()) {
+                directoryWalkAdded();
+                scheduler.submit(new DirectoryWalkTask(this, scheduler, file.toPath(), walkedDirectories));
+            } else {
+                jarFileFound(file);
+            }
         }
 
-        Queue<JarFileTask> jarFileTasks = new LinkedList<>();
-        Queue<JarEntryTask> jarEntryTasks = new LinkedList<>();
-        for (File file : actualFiles) {
-            jarFileTasks.add(new JarFileTask(this, jarEntryTasks, file));
-        }
+        jarFileTaskFinished();
+        return this;
+    }
 
-        stateTracker.setState(StateTracker.State.OPENING_JARS);
-        stateTracker.setTotalJarCount(jarFileTasks.size());
+    /**
+     * Starts the scan, without waiting for it to finish.
+     * <p>
+     * The returned future completes with this checker once the scan is done,
+     * or exceptionally if the scan failed, was {@link #cancel() cancelled} or {@link Builder#timeout(long, TimeUnit) timed out},
+     * the latter with a {@link TimeoutException}.
+     * On a {@link Builder#pool(ForkJoinPool) pool}, it is completed by the thread finishing the last task.
+     * Cancelling the future cancels the scan. The reports found before are passed to the report sink either way.
+     */
+    public CompletableFuture<JavaUsageChecker> startAsync() {
+        CompletableFuture<JavaUsageChecker> future = new CompletableFuture<>();
+        future.whenComplete((javaUsageChecker, e) -> {
+            if (future.isCancelled())
+                cancel();
+        });
+
+        start();
+        scheduler.joinAsync(() -> {
+            try {
+                finish();
+                if (timedOut) {
+                    future.completeExceptionally(new TimeoutException("Scan timed out after " + timeoutMillis + " ms"));
+                } else if (cancelled) {
+                    future.cancel(false);
+                } else {
+                    future.complete(this);
+                }
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
 
-        WorkerCollection.create(workerCount, "JarFile-opener-", jarFileTasks)
-                .start()
-                .join();
+    /**
+     * Stops the scan as soon as possible: jar files and classes not checked yet are skipped,
+     * and directories are no longer walked. Jar files and indexes aren't recorded once cancelled, as they'd be incomplete.
+     * The scan must still be {@link #join() joined}, which returns quickly.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
 
-        stateTracker.setState(StateTracker.State.CHECKING_CLASSES);
-        stateTracker.setTotalClassCount(jarEntryTasks.size());
+    public boolean isCancelled() {
+        return cancelled;
+    }
 
-        jarEntryTaskWorkerCollection = WorkerCollection.create(4, "JarEntry-checker-", jarEntryTasks)
-                .start();
+    /**
+     * @return whether the scan was cancelled as it {@link Builder#timeout(long, TimeUnit) timed out}
+     */
+    public boolean isTimedOut() {
+        return timedOut;
+    }
 
-        return this;
+    /**
+     * Called for every jar file found on disk, submitting the task opening it
+     */
+    void jarFileFound(File file) {
+        pendingJarFileTasks.incrementAndGet();
+        stateTracker.incrementTotalJarCount();
+        metrics.addJarsFound(1);
+        scheduler.submit(new JarFileTask(this, scheduler, file));
+    }
+
+    /**
+     * Called for every nested jar file found, before the {@link JarFileTask} it was found by is done.
+     */
+    void jarFileTaskAdded() {
+        pendingJarFileTasks.incrementAndGet();
+        stateTracker.incrementTotalJarCount();
+        metrics.addJarsFound(1);
+    }
+
+    void directoryWalkAdded() {
+        pendingJarFileTasks.incrementAndGet();
+    }
+
+    /**
+     * Called by {@link DirectoryWalkTask}s once they're done, successfully or not.
+     */
+    void directoryWalkFinished() {
+        jarFileTaskFinished();
     }
 
-    private static List<File> expandFile(File file) {
-        if (file.isDirectory()) {
-            return Arrays.stream(Objects.requireNonNull(file.listFiles()))
-                    .map(JavaUsageChecker::expandFile)
-                    .flatMap(List::stream)
-                    .collect(Collectors.toList());
-        } else {
-            return Collections.singletonList(file);
+    /**
+     * Called by {@link JarFileTask}s once they're done, successfully or not.
+     */
+    void jarFileTaskFinished() {
+        if (pendingJarFileTasks.decrementAndGet() == 0) {
+            allJarFilesOpened();
         }
     }
 
+    private void allJarFilesOpened() {
+        stateTracker.setTotalClassCount(stateTracker.getClassesFoundCount());
+        stateTracker.setState(StateTracker.State.CHECKING_CLASSES);
+        metrics.phaseStarted(ScanMetrics.Phase.CHECKING_CLASSES);
+    }
+
     public JavaUsageChecker join() {
-        if (jarEntryTaskWorkerCollection == null)
+        if (scheduler == null)
             throw new IllegalStateException("Join called, but not started");
-        jarEntryTaskWorkerCollection.join();
+        scheduler.join();
+        finish();
         return this;
     }
 
+    /**
+     * Called once all tasks have finished, to close the report sink and read buffers, and write the index
+     */
+    private void finish() {
+        ScheduledFuture<?> timeout = this.timeout;
+        if (timeout != null)
+            timeout.cancel(false);
+        reportSink.close();
+        for (MappedJarFile.Buffers buffers : readBuffers.values()) {
+            buffers.close();
+        }
+
+        if (indexWriter != null && !cancelled) {
+            try {
+                indexWriter.write(indexFile);
+            } catch (IOException e) {
+                throw new RuntimeException("Error writing index to " + indexFile, e);
+            }
+        }
+        metrics.phaseStarted(ScanMetrics.Phase.FINISHED);
+    }
+
     public StateTracker getStateTracker() {
         return stateTracker;
     }
 
+    public ScanMetrics getMetrics() {
+        return metrics;
+    }
+
+    public EntryLimits getEntryLimits() {
+        return entryLimits;
+    }
+
+    /**
+     * @return the buffers the current thread reads jar entries into
+     */
+    public MappedJarFile.Buffers getReadBuffers() {
+        return readBuffers.get();
+    }
+
+    /**
+     * Called for every jar file, class, file or directory skipped, as it exceeded the {@link #getEntryLimits() limits} or couldn't be read
+     */
+    void entrySkipped(ScanError error) {
+        metrics.entrySkipped();
+        errors.add(error);
+    }
+
+    /**
+     * @return the jar files and classes skipped so far, in no particular order
+     */
+    public List<ScanError> getErrors() {
+        return new ArrayList<>(errors);
+    }
+
+    /**
+     * @return an estimate of the amount of tasks waiting to be run, or {@code 0} if not started
+     */
+    public int getQueuedTaskCount() {
+        Scheduler scheduler = this.scheduler;
+        return scheduler == null ? 0 : scheduler.getQueuedTaskCount();
+    }
+
+    public List<Query> getQueries() {
+        return queries;
+    }
+
+    public ParsingMode getParsingMode() {
+        return parsingMode;
+    }
+
+    public MatchMode getMatchMode() {
+        return matchMode;
+    }
+
+    /**
+     * @return the listener for the usages found in a single jar file, only reporting the first ones if the
+     * {@link #getMatchMode() match mode} says so
+     */
+    UsageListener createJarUsageListener() {
+        return matchMode == MatchMode.ALL ? this : new FirstMatchListener(this, matchMode);
+    }
+
+    public ArchiveFilter getArchiveFilter() {
+        return archiveFilter;
+    }
+
+    public boolean isParallelWalk() {
+        return parallelWalk;
+    }
+
+    @Nullable
+    public ClassDeduplicator getClassDeduplicator() {
+        return classDeduplicator;
+    }
+
+    @Nullable
+    public ScanCache getScanCache() {
+        return scanCache;
+    }
+
+    /**
+     * @return whether all usages of jar files are recorded, for the {@link #getScanCache() cache} or an index
+     */
+    public boolean isRecordingUsages() {
+        return scanCache != null || indexWriter != null;
+    }
+
+    /**
+     * Called with the recorded usages of every jar file, if {@link #isRecordingUsages() recording}.
+     *
+     * @param file the jar file to cache the usages of, or {@code null} if they can't be cached
+     * @param fromCache whether the usages were loaded from the cache
+     */
+    void jarFileRecorded(String jarFileName, @Nullable File file, JarSymbols jarSymbols, boolean fromCache) {
+        if (cancelled)
+            return;
+        if (scanCache != null && file != null && !fromCache) {
+            scanCache.store(file, jarSymbols);
+        }
+        if (indexWriter != null) {
+            indexWriter.add(jarFileName, jarSymbols);
+        }
+    }
+
+    /**
+     * @throws IllegalStateException if a custom {@link Builder#reportSink(ReportSink) report sink} is used
+     */
     public List<Report> getReports() {
-        return reports;
+        if (!(reportSink instanceof ReportCollector))
+            throw new IllegalStateException("Reports are passed to " + reportSink + " instead of being collected");
+        return ((ReportCollector) reportSink).getReports();
+    }
+
+    public ReportSink getReportSink() {
+        return reportSink;
+    }
+
+    /**
+     * @return the filter for skipping classes no query can match, or {@code null} if all classes must be visited
+     */
+    @Nullable
+    public ConstantPoolFilter getConstantPoolFilter() {
+        return constantPoolFilter;
     }
 
     public void report(Report usage) {
-        reports.add(usage);
+        metrics.queryMatched(usage.getQuery());
+        reportSink.accept(usage);
+    }
+
+    /**
+     * Counts the given matches on the location they were found in, if only {@link ReportAggregator counting}
+     *
+     * @return whether the matches were counted, otherwise they must be reported
+     */
+    private boolean count(ClassLocation parent, List<Query> matches) {
+        if (reportAggregator == null)
+            return false;
+        for (Query query : matches) {
+            metrics.queryMatched(query);
+            reportAggregator.count(query, parent);
+        }
+        return true;
     }
 
+    /**
+     * Converts an internal class name or class file name to the dotted form used by reports
+     */
     public static String formatClassName(String className) {
         className = className.replace('/', '.');
         if (className.endsWith(".class"))
@@ -171,35 +756,61 @@ public static String formatClassName(String className) {
         return className;
     }
 
-    public void reportMethodAccess(ClassLocation.Method.Code code, int opcode, String owner, String name, String descriptor, boolean isInterface) {
-        owner = formatClassName(owner);
+    /**
+     * @param owner the owner in internal form
+     * @return the queries matching the given method access
+     */
+    public List<Query> matchMethodAccess(int opcode, String owner, String name, String descriptor, boolean isInterface) {
+        return queryIndex.matchMethodAccess(opcode, owner, name, descriptor, isInterface);
+    }
 
-        for (Query query : queries) {
-            if (query.checkMethodAccess(opcode, owner, name, descriptor, isInterface)) {
-                // TODO include details of invoked method, same for others below
-                report(new Report(code, query));
-            }
-        }
+    /**
+     * @param owner the owner in internal form
+     * @return the queries matching the given field access
+     */
+    public List<Query> matchFieldAccess(int opcode, String owner, String name, String descriptor) {
+        return queryIndex.matchFieldAccess(opcode, owner, name, descriptor);
     }
 
-    public void reportFieldAccess(ClassLocation.Method.Code code, int opcode, String owner, String name, String descriptor) {
-        owner = formatClassName(owner);
+    /**
+     * @param name the class name in internal form, see {@link Query}
+     * @return the queries matching the given class usage
+     */
+    public List<Query> matchClassUsage(String name) {
+        return queryIndex.matchClassUsage(name);
+    }
 
-        for (Query query : queries) {
-            if (query.checkFieldAccess(opcode, owner, name, descriptor)) {
-                report(new Report(code, query));
-            }
+    /**
+     * Reports the usages matching the given queries.
+     *
+     * @param parent the class, field or method location the usage was found in
+     * @param kind the kind of location within the parent, see {@link UsageListener#reportClassUsage(ClassLocation, ClassLocation.Kind, int, String)}
+     * @param number the line number or parameter index, see {@link ClassLocation#locate(ClassLocation.Kind, int)}
+     */
+    public void reportMatches(ClassLocation parent, ClassLocation.Kind kind, int number, List<Query> matches) {
+        if (matches.isEmpty() || count(parent, matches))
+            return;
+
+        ClassLocation location = parent.locate(kind, number);
+        for (Query query : matches) {
+            // TODO include details of the used class or member
+            report(new Report(location, query));
         }
     }
 
-    public void reportClassUsage(ClassLocation location, String name) {
-        name = formatClassName(name);
+    @Override
+    public void reportMethodAccess(ClassLocation.Method method, int lineNumber, int opcode, String owner, String name, String descriptor, boolean isInterface) {
+        reportMatches(method, ClassLocation.Kind.CODE, lineNumber, matchMethodAccess(opcode, owner, name, descriptor, isInterface));
+    }
 
-        for (Query query : queries) {
-            if (query.checkClassUsage(name)) {
-                report(new Report(location, query));
-            }
-        }
+    @Override
+    public void reportFieldAccess(ClassLocation.Method method, int lineNumber, int opcode, String owner, String name, String descriptor) {
+        reportMatches(method, ClassLocation.Kind.CODE, lineNumber, matchFieldAccess(opcode, owner, name, descriptor));
+    }
+
+    @Override
+    public void reportClassUsage(ClassLocation parent, ClassLocation.Kind kind, int number, String name) {
+        reportMatches(parent, kind, number, matchClassUsage(name));
     }
 
 }
@@ -1,47 +1,92 @@
 package com.github.tpgamesnl.javausagechecker;
 
+import com.github.tpgamesnl.javausagechecker.index.UsageIndex;
+import com.github.tpgamesnl.javausagechecker.jar.ArchiveFilter;
+import com.github.tpgamesnl.javausagechecker.metrics.MetricsReporter;
+import com.github.tpgamesnl.javausagechecker.metrics.MetricsServer;
 import com.github.tpgamesnl.javausagechecker.query.ClassQuery;
 import com.github.tpgamesnl.javausagechecker.query.FieldQuery;
 import com.github.tpgamesnl.javausagechecker.query.MethodQuery;
 import com.github.tpgamesnl.javausagechecker.query.Query;
 import com.github.tpgamesnl.javausagechecker.query.StringCheck;
+import com.github.tpgamesnl.javausagechecker.report.BinaryReportSink;
+import com.github.tpgamesnl.javausagechecker.report.FormattedReportSink;
+import com.github.tpgamesnl.javausagechecker.report.ReportAggregator;
+import com.github.tpgamesnl.javausagechecker.report.ReportFormat;
+import com.github.tpgamesnl.javausagechecker.report.ReportSink;
+import com.github.tpgamesnl.javausagechecker.shard.ShardCoordinator;
+import com.github.tpgamesnl.javausagechecker.shard.ShardPlan;
+import com.github.tpgamesnl.javausagechecker.shard.ShardProgress;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
 import java.io.PrintStream;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
 public class Main {
 
+    /**
+     * The options only used by the coordinator of a sharded scan, which aren't passed on to the shards
+     */
+    private static final Set<String> COORDINATOR_OPTIONS = new HashSet<>(Arrays.asList("o", "format", "aggregate", "metrics", "shards"));
+
     public static void main(String[] args) {
         if (args.length == 0 || args[0].equalsIgnoreCase("help")) {
             sendUsage(false);
             return;
         }
 
+        if (args.length == 1 && args[0].toLowerCase(Locale.ROOT).startsWith("serve:")) {
+            serve(new File(args[0].substring("serve:".length())));
+            return;
+        }
+
         JavaUsageChecker.Builder builder = JavaUsageChecker.builder();
+        int metricsPort = -1;
+        File outputFile = null;
+        ReportFormat reportFormat = null;
+        ReportAggregator reportAggregator = null;
+        List<File> files = new ArrayList<>();
+        int shardCount = 0;
+        int shardIndex = -1;
+        int shardTotal = 0;
+        File shardOutputFile = null;
+        List<File> mergeFiles = new ArrayList<>();
+        // The arguments passed on to shard processes, which write their reports to the coordinator
+        List<String> shardArguments = new ArrayList<>();
 
         for (String arg : args) {
-            String[] parts = arg.split(":");
-            if (parts.length == 1) {
+            int split = arg.indexOf(':');
+            if (split == -1) {
                 sendUsage();
                 return;
             }
 
-            String key = parts[0];
-            String value = Arrays.stream(parts)
-                    .skip(1)
-                    .collect(Collectors.joining(":"));
+            String key = arg.substring(0, split);
+            String value = arg.substring(split + 1);
             if (value.startsWith("\"") && value.endsWith("\"")) {
                 value = value.substring(1, value.length() - 1);
             }
+            if (!COORDINATOR_OPTIONS.contains(key.toLowerCase(Locale.ROOT))) {
+                shardArguments.add(arg);
+            }
 
             switch (key.toLowerCase(Locale.ROOT)) {
                 // File or Directory
@@ -53,7 +98,7 @@ public static void main(String[] args) {
                         return;
                     }
 
-                    builder.scans(file);
+                    files.add(file);
 
                     break;
                 }
@@ -89,6 +134,277 @@ public static void main(String[] args) {
                     break;
                 }
 
+                // Output file
+                case "o": {
+                    outputFile = new File(value);
+
+                    break;
+                }
+
+                // Output format
+                case "format": {
+                    switch (value.toLowerCase(Locale.ROOT)) {
+                        case "text":
+                            reportFormat = ReportFormat.TEXT;
+                            break;
+                        case "jsonl":
+                            reportFormat = ReportFormat.JSON_LINES;
+                            break;
+                        case "csv":
+                            reportFormat = ReportFormat.CSV;
+                            break;
+                        case "sarif":
+                            reportFormat = ReportFormat.SARIF;
+                            break;
+                        default:
+                            System.err.println("Invalid format: " + value + " (expected text, jsonl, csv or sarif)");
+                            return;
+                    }
+
+                    break;
+                }
+
+                // Only counting usages
+                case "aggregate": {
+                    switch (value.toLowerCase(Locale.ROOT)) {
+                        case "classes":
+                            reportAggregator = new ReportAggregator(false);
+                            break;
+                        case "methods":
+                            reportAggregator = new ReportAggregator(true);
+                            break;
+                        default:
+                            System.err.println("Invalid aggregation: " + value + " (expected classes or methods)");
+                            return;
+                    }
+
+                    break;
+                }
+
+                // Sharded scan
+                case "shards": {
+                    try {
+                        shardCount = Integer.parseInt(value);
+                        if (shardCount <= 0) {
+                            throw new NumberFormatException("Only positive allowed");
+                        }
+                    } catch (NumberFormatException e) {
+                        System.err.println("Invalid shard count: " + value + " (" + e.getMessage() + ")");
+                        return;
+                    }
+
+                    break;
+                }
+
+                // A single shard
+                case "shard": {
+                    int slash = value.indexOf('/');
+                    try {
+                        if (slash == -1) {
+                            throw new NumberFormatException("Expected <shard>/<shard count>");
+                        }
+                        shardIndex = Integer.parseInt(value.substring(0, slash));
+                        shardTotal = Integer.parseInt(value.substring(slash + 1));
+                        if (shardIndex < 0 || shardIndex >= shardTotal) {
+                            throw new NumberFormatException("Shard out of range");
+                        }
+                    } catch (NumberFormatException e) {
+                        System.err.println("Invalid shard: " + value + " (" + e.getMessage() + ")");
+                        return;
+                    }
+
+                    break;
+                }
+
+                // Shard reports file
+                case "shardout": {
+                    shardOutputFile = new File(value);
+
+                    break;
+                }
+
+                // Merging shard reports
+                case "merge": {
+                    for (String path : value.split(",")) {
+                        File file = new File(path);
+                        if (!file.isFile()) {
+                            System.err.println("The shard reports file '" + path + "' does not exist");
+                            return;
+                        }
+                        mergeFiles.add(file);
+                    }
+
+                    break;
+                }
+
+                // Parsing mode
+                case "p": {
+                    ParsingMode parsingMode;
+                    try {
+                        parsingMode = ParsingMode.valueOf(value.toUpperCase(Locale.ROOT));
+                    } catch (IllegalArgumentException e) {
+                        System.err.println("Invalid parsing mode: " + value + " (expected full, skip_frames or class_level)");
+                        return;
+                    }
+
+                    builder.parsingMode(parsingMode);
+
+                    break;
+                }
+
+                // Which usages are reported
+                case "match": {
+                    MatchMode matchMode;
+                    try {
+                        matchMode = MatchMode.valueOf(value.toUpperCase(Locale.ROOT));
+                    } catch (IllegalArgumentException e) {
+                        System.err.println("Invalid match mode: " + value + " (expected all, first_per_jar or first_per_query)");
+                        return;
+                    }
+
+                    builder.matchMode(matchMode);
+
+                    break;
+                }
+
+                // Which files in directories are scanned
+                case "filter": {
+                    ArchiveFilter archiveFilter;
+                    try {
+                        archiveFilter = ArchiveFilter.valueOf(value.toUpperCase(Locale.ROOT));
+                    } catch (IllegalArgumentException e) {
+                        System.err.println("Invalid filter: " + value + " (expected extension or magic)");
+                        return;
+                    }
+
+                    builder.archiveFilter(archiveFilter);
+
+                    break;
+                }
+
+                // Directory walking
+                case "walk": {
+                    switch (value.toLowerCase(Locale.ROOT)) {
+                        case "serial":
+                            builder.parallelWalk(false);
+                            break;
+                        case "parallel":
+                            builder.parallelWalk(true);
+                            break;
+                        default:
+                            System.err.println("Invalid walk mode: " + value + " (expected serial or parallel)");
+                            return;
+                    }
+
+                    break;
+                }
+
+                // Class deduplication
+                case "dedupe": {
+                    switch (value.toLowerCase(Locale.ROOT)) {
+                        case "on":
+                            builder.deduplicateClasses(true);
+                            break;
+                        case "off":
+                            builder.deduplicateClasses(false);
+                            break;
+                        default:
+                            System.err.println("Invalid deduplication: " + value + " (expected on or off)");
+                            return;
+                    }
+
+                    break;
+                }
+
+                // Timeout
+                case "timeout": {
+                    try {
+                        long seconds = Long.parseLong(value);
+                        if (seconds <= 0) {
+                            throw new NumberFormatException("Only positive allowed");
+                        }
+                        builder.timeout(seconds, TimeUnit.SECONDS);
+                    } catch (NumberFormatException e) {
+                        System.err.println("Invalid timeout: " + value + " (" + e.getMessage() + ")");
+                        return;
+                    }
+
+                    break;
+                }
+
+                // Entry limits
+                case "maxentrysize":
+                case "maxinstructions":
+                case "entrytimeout": {
+                    try {
+                        int limit = Integer.parseInt(value);
+                        if (limit < 0) {
+                            throw new NumberFormatException("Only positive or 0 allowed");
+                        }
+                        if (key.equalsIgnoreCase("maxentrysize")) {
+                            if (limit > Integer.MAX_VALUE / (1024 * 1024)) {
+                                throw new NumberFormatException("Too large");
+                            }
+                            builder.maxEntrySize(limit * 1024 * 1024);
+                        } else if (key.equalsIgnoreCase("maxinstructions")) {
+                            builder.maxInstructions(limit);
+                        } else {
+                            builder.entryTimeout(limit, TimeUnit.MILLISECONDS);
+                        }
+                    } catch (NumberFormatException e) {
+                        System.err.println("Invalid " + key + ": " + value + " (" + e.getMessage() + ")");
+                        return;
+                    }
+
+                    break;
+                }
+
+                // Scan cache
+                case "cache": {
+                    builder.cache(new File(value));
+
+                    break;
+                }
+
+                // Usage index
+                case "index": {
+                    builder.writeIndex(new File(value));
+
+                    break;
+                }
+
+                // Metrics endpoint
+                case "metrics": {
+                    try {
+                        metricsPort = Integer.parseInt(value);
+                        if (metricsPort < 0 || metricsPort > 0xFFFF) {
+                            throw new NumberFormatException("Port out of range");
+                        }
+                    } catch (NumberFormatException e) {
+                        System.err.println("Invalid metrics port: " + value + " (" + e.getMessage() + ")");
+                        return;
+                    }
+
+                    break;
+                }
+
+                // Scheduler
+                case "s": {
+                    switch (value.toLowerCase(Locale.ROOT)) {
+                        case "forkjoin":
+                            builder.scheduler(JavaUsageChecker.FORK_JOIN_SCHEDULER);
+                            break;
+                        case "threads":
+                            builder.scheduler(JavaUsageChecker.THREAD_SCHEDULER);
+                            break;
+                        default:
+                            System.err.println("Invalid scheduler: " + value + " (expected forkjoin or threads)");
+                            return;
+                    }
+
+                    break;
+                }
+
                 default: {
                     sendUsage();
                     return;
@@ -97,44 +413,247 @@ public static void main(String[] args) {
 
         }
 
-        if (builder.getFiles().size() == 0) {
+        if (files.isEmpty() && mergeFiles.isEmpty()) {
             System.err.println("No files or directories specified");
             return;
         }
 
-        if (builder.getQueries().size() == 0) {
+        if (builder.getQueries().size() == 0 && (builder.getIndexFile() == null || !mergeFiles.isEmpty())) {
             System.err.println("No queries specified");
             return;
         }
 
+        if ((shardCount != 0 || !mergeFiles.isEmpty()) && (builder.getIndexFile() != null || metricsPort != -1
+                || shardIndex != -1 || shardOutputFile != null)) {
+            System.err.println("Sharded scans and merges can't be combined with index:, metrics:, shard: or shardout:");
+            return;
+        }
+
+        if (shardIndex != -1) {
+            try {
+                files = ShardPlan.create(files, builder.getArchiveFilter(), shardTotal).getFiles(shardIndex);
+            } catch (IOException e) {
+                System.err.println("Cannot list the files of shard " + shardIndex + " (" + e.getMessage() + ")");
+                return;
+            }
+        }
+        builder.scans(files.toArray(new File[0]));
+
+        if (shardOutputFile != null) {
+            if (reportAggregator != null || reportFormat != null || outputFile != null) {
+                System.err.println("Shard reports can't be combined with o:, format: or aggregate:");
+                return;
+            }
+            try {
+                builder.reportSink(new BinaryReportSink(shardOutputFile, builder.getQueries()));
+            } catch (IOException e) {
+                System.err.println("Cannot write to '" + shardOutputFile + "' (" + e.getMessage() + ")");
+                return;
+            }
+        } else if (reportAggregator != null) {
+            if (reportFormat != null) {
+                System.err.println("Aggregated counts can't be written in a format");
+                return;
+            }
+            builder.reportSink(reportAggregator);
+        } else if (outputFile != null) {
+            try {
+                builder.reportSink(new FormattedReportSink(reportFormat == null ? ReportFormat.TEXT : reportFormat, outputFile));
+            } catch (FileNotFoundException e) {
+                System.err.println("Cannot write to '" + outputFile + "' (" + e.getMessage() + ")");
+                return;
+            }
+        } else if (reportFormat != null) {
+            builder.reportSink(new FormattedReportSink(reportFormat, System.out));
+        }
+
+        if (builder.getReportSink() == null) {
+            // Written by a single thread, so workers don't wait on the console
+            builder.reportSink(new FormattedReportSink(ReportFormat.LIST, System.out));
+        }
+
+        // Keep the console output free of anything but the reports when they are written to it in a format
+        PrintStream log = outputFile == null && reportFormat != null ? System.err : System.out;
+
+        if (shardOutputFile != null) {
+            // Started by a coordinator, which only reads the progress
+            scanShard(builder.create());
+            return;
+        }
+
         for (Query query : builder.getQueries()) {
-            System.out.println("Query: " + query);
+            log.println("Query: " + query);
+        }
+
+        if (shardCount != 0 || !mergeFiles.isEmpty()) {
+            ReportSink reportSink = builder.getReportSink();
+            try {
+                if (shardCount != 0) {
+                    new ShardCoordinator(shardArguments, shardCount, builder.getQueries(), log).run(reportSink);
+                } else {
+                    for (File mergeFile : mergeFiles) {
+                        BinaryReportSink.read(mergeFile, builder.getQueries(), reportSink);
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("Cannot " + (shardCount != 0 ? "scan the shards" : "merge the shard reports")
+                        + " (" + e.getMessage() + ")");
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            reportSink.close();
+
+            if (reportAggregator != null) {
+                printCounts(reportAggregator, outputFile);
+            }
+            return;
         }
 
+        // Progress is printed by the metrics reporter every second, rather than for every class
         builder.stateTracker(new StateTracker() {
             @Override
-            void updateState(State state) {
-                System.out.println("New state: " + state);
+            protected void updateState(State state) {
+                log.println("New state: " + state);
             }
 
             @Override
-            void jarOpenedCountUpdated(int count) {
-                System.out.println("jars opened: " + count);
+            protected void jarOpenedCountUpdated(int count) {
             }
 
             @Override
-            void classesCheckedCountUpdated(int count) {
-                System.out.println("classes checked: " + count);
+            protected void classesFoundCountUpdated(int count) {
+            }
+
+            @Override
+            protected void classesCheckedCountUpdated(int count) {
             }
         });
 
-        List<Report> reports = builder.create()
-                .start()
-                .join()
-                .getReports();
+        JavaUsageChecker javaUsageChecker = builder.create();
+
+        MetricsServer metricsServer = null;
+        if (metricsPort != -1) {
+            try {
+                metricsServer = MetricsServer.start(javaUsageChecker, metricsPort);
+            } catch (IOException e) {
+                System.err.println("Cannot serve metrics on port " + metricsPort + " (" + e.getMessage() + ")");
+                return;
+            }
+            log.println("Serving metrics on http://localhost:" + metricsServer.getPort() + "/metrics");
+        }
+
+        MetricsReporter metricsReporter = MetricsReporter.start(javaUsageChecker, log, 1000);
+        javaUsageChecker.start()
+                .join();
+        metricsReporter.close();
+        if (javaUsageChecker.isTimedOut()) {
+            System.err.println("The scan timed out, so the reports are incomplete");
+        }
+        printErrors(javaUsageChecker.getErrors());
+
+        if (reportAggregator != null) {
+            printCounts(reportAggregator, outputFile);
+        }
+
+        if (metricsServer != null) {
+            metricsServer.close();
+        }
+    }
+
+    /**
+     * Scans a single shard, printing only the progress for the coordinator
+     */
+    private static void scanShard(JavaUsageChecker javaUsageChecker) {
+        ShardProgress shardProgress = ShardProgress.start(javaUsageChecker, System.out, 500);
+        javaUsageChecker.start()
+                .join();
+        shardProgress.close();
+        if (javaUsageChecker.isTimedOut()) {
+            System.err.println("The scan timed out, so the reports are incomplete");
+        }
+        printErrors(javaUsageChecker.getErrors());
+    }
+
+    /**
+     * Prints the skipped jar files and classes, sorted by location
+     */
+    private static void printErrors(List<ScanError> errors) {
+        if (errors.isEmpty())
+            return;
+
+        errors.sort(Comparator.comparing(ScanError::getLocation));
+        System.err.println("Skipped " + errors.size() + " entries:");
+        for (ScanError error : errors) {
+            System.err.println("  " + error.getLocation() + ": " + error.getKind() + " (" + error.getMessage() + ")");
+        }
+    }
+
+    /**
+     * Prints the summary table of the aggregated counts to the given file,
+     * or the 20 most used entries per table to the console if there is none
+     */
+    private static void printCounts(ReportAggregator reportAggregator, @Nullable File outputFile) {
+        if (outputFile == null) {
+            reportAggregator.print(System.out, 20);
+            return;
+        }
 
-        for (Report report : reports) {
-            System.out.println("-  " + report);
+        try (PrintStream out = new PrintStream(new BufferedOutputStream(new FileOutputStream(outputFile)), false, "UTF-8")) {
+            reportAggregator.print(out, Integer.MAX_VALUE);
+        } catch (IOException e) {
+            System.err.println("Cannot write to '" + outputFile + "' (" + e.getMessage() + ")");
+        }
+    }
+
+    /**
+     * Answers queries read from the console against the given usage index, until {@code exit} is entered
+     */
+    private static void serve(File indexFile) {
+        UsageIndex usageIndex;
+        try {
+            usageIndex = UsageIndex.open(indexFile);
+        } catch (IOException e) {
+            System.err.println("Cannot open index '" + indexFile + "' (" + e.getMessage() + ")");
+            return;
+        }
+        System.out.println("Loaded index of " + usageIndex.getUsageCount() + " usages of "
+                + usageIndex.getSymbolCount() + " symbols, enter a query or 'exit'");
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(System.in));
+        while (true) {
+            String line;
+            try {
+                line = reader.readLine();
+            } catch (IOException e) {
+                new RuntimeException("Error reading query", e).printStackTrace();
+                return;
+            }
+            if (line == null)
+                return;
+
+            line = line.trim();
+            if (line.isEmpty())
+                continue;
+            if (line.equalsIgnoreCase("exit") || line.equalsIgnoreCase("quit"))
+                return;
+            if (line.startsWith("q:"))
+                line = line.substring(2);
+
+            Query query = parseQuery(line);
+            if (query == null) {
+                System.err.println("Invalid query syntax: '" + line + "'");
+                continue;
+            }
+
+            long start = System.nanoTime();
+            JavaUsageChecker javaUsageChecker = JavaUsageChecker.builder()
+                    .uses(query)
+                    .reportSink(report -> System.out.println("-  " + report))
+                    .create();
+            int reportCount = usageIndex.query(javaUsageChecker);
+            System.out.println(reportCount + " usages found in " + (System.nanoTime() - start) / 1_000_000 + " ms");
         }
     }
 
@@ -177,9 +696,24 @@ private static Query parseQuery(String s) {
             } else if (value.startsWith("[w]")) {
                 method = StringCheck.Method.CONTAINS_WORD;
                 value = value.substring(3);
+            } else if (value.startsWith("[i]")) {
+                method = StringCheck.Method.CONTAINS_IGNORE_CASE;
+                value = value.substring(3);
+            } else if (value.startsWith("[r]")) {
+                method = StringCheck.Method.REGEX;
+                value = value.substring(3);
+            } else if (value.startsWith("[g]")) {
+                method = StringCheck.Method.GLOB;
+                value = value.substring(3);
             }
 
-            StringCheck stringCheck = new StringCheck(method, value);
+            StringCheck stringCheck;
+            try {
+                stringCheck = new StringCheck(method, value);
+            } catch (IllegalArgumentException e) {
+                System.err.println("Invalid value '" + value + "' (" + e.getMessage() + ")");
+                return null;
+            }
 
             tags.put(key, stringCheck);
         }
@@ -229,8 +763,32 @@ private static void sendUsage(boolean invalidSyntax) {
         out.println();
         out.println("Possible options:");
         out.println("  f:<file path>");
-        out.println("  d:<directory path>");
+        out.println("  d:<directory path> (jar and zip files nested in scanned files are scanned too)");
         out.println("  q:<query>");
+        out.println("  o:<output file> (reports are printed to the console otherwise)");
+        out.println("  format:<text|jsonl|csv|sarif> (the format reports are written in, text being the default)");
+        out.println("  aggregate:<classes|methods> (only prints how often every query is used per jar and class, and per method with methods)");
+        out.println("  t:<thread count>");
+        out.println("  s:<forkjoin|threads> (scheduler, forkjoin being the default)");
+        out.println("  p:<full|skip_frames|class_level> (parsing mode, skip_frames being the default)");
+        out.println("  match:<all|first_per_jar|first_per_query> (reports every usage, or only the first one per jar or per query per jar; all being the default)");
+        out.println("  filter:<extension|magic> (scans files in directories named .jar/.zip, or starting like zip files; extension being the default)");
+        out.println("  walk:<serial|parallel> (walks subdirectories one by one, or in parallel; serial being the default)");
+        out.println("  dedupe:<on|off> (checks identical copies of a class in different jars only once; on being the default)");
+        out.println("  maxentrysize:<MB> (skips classes and nested jars larger than this uncompressed, 0 for no limit; 64 being the default)");
+        out.println("  maxinstructions:<count> (skips classes with more instructions than this, 0 for no limit, the default)");
+        out.println("  entrytimeout:<ms> (skips classes taking longer than this to check, 0 for no limit, the default)");
+        out.println("  timeout:<seconds> (stops the scan after the given time, reporting the usages found so far)");
+        out.println("  cache:<directory> (caches the usages of jar files, so unchanged ones don't have to be opened again)");
+        out.println("  index:<index file> (writes an index of all usages to the given file, queries are optional)");
+        out.println("  shards:<shard count> (splits the jar files into shards by size, each scanned by its own process, and merges their reports)");
+        out.println("  shard:<shard>/<shard count> (only scans the given shard, starting at 0, for scanning shards on separate machines)");
+        out.println("  shardout:<file> (writes the reports in a binary form for merge:, printing only the progress)");
+        out.println("  merge:<file>,<file>,... (merges the reports written by shardout: instead of scanning, using the same queries)");
+        out.println("  metrics:<port> (serves the progress metrics on http://localhost:<port>/metrics, in the Prometheus format)");
+        out.println();
+        out.println("Alternatively, 'java -jar JavaUsageChecker.jar serve:<index file>' answers queries entered in the console");
+        out.println("using an index written before, without scanning the jar files again");
         out.println();
         out.println("Query syntax:");
         out.println("  <prefix>:<key>=<value>;<key>=<value>;<key>=<value> etc");
@@ -241,11 +799,15 @@ private static void sendUsage(boolean invalidSyntax) {
         out.println("  For fields and methods, o(wner) refers to the class that defined the member");
         out.println("  For fields and methods, d(escriptor) refers to the (method or field) descriptor of the member");
         out.println();
-        out.println("  All values can be prefixed by either [c], [e] or [w] ([c] being the default)");
+        out.println("  All values can be prefixed by either [c], [e], [w], [i], [r] or [g] ([c] being the default)");
         out.println("  These are different methods of string comparisons:");
         out.println("    [c] checks if the value is contained in the string");
         out.println("    [e] checks if the value is exactly equal to the string");
         out.println("    [w] checks if the value is a word (separated by .) within the string, mostly useful for class names");
+        out.println("    [i] checks if the value is contained in the string, ignoring case");
+        out.println("    [r] checks if the value, a regular expression, is found in the string");
+        out.println("    [g] checks if the value, a glob pattern, matches the whole string:");
+        out.println("        * matches anything within a word, ** matches anything and ? matches a single character");
         out.println();
         out.println();
         out.println("Examples:");
@@ -253,6 +815,8 @@ private static void sendUsage(boolean invalidSyntax) {
         out.println("    looks for method usages of methods with names containing 'get' in the file MyJavaProgram.jar");
         out.println("  java -jar JavaUsageChecker.jar d:\"java testing\" q:c:n=[w]Info");
         out.println("    looks for class usages of classes with names containing the word 'Info' in the directory 'java testing'");
+        out.println("  java -jar JavaUsageChecker.jar d:plugins q:c:n=[g]ch.njol.skript.**Event");
+        out.println("    looks for class usages of classes in the package 'ch.njol.skript' (or its subpackages) with names ending in 'Event'");
     }
 
 }
@@ -0,0 +1,25 @@
+package com.github.tpgamesnl.javausagechecker;
+
+/**
+ * Which of the usages found in a jar file are reported.
+ * <p>
+ * The modes reporting only the first usages skip the remaining classes of a jar file once nothing is left to report,
+ * unless all usages are being recorded for the cache or an index.
+ * Which usage is found first depends on the order the classes are checked in.
+ */
+public enum MatchMode {
+
+    /**
+     * Reports every usage
+     */
+    ALL,
+    /**
+     * Only reports the first usage in every jar file, of whichever query
+     */
+    FIRST_PER_JAR,
+    /**
+     * Only reports the first usage of every query in every jar file
+     */
+    FIRST_PER_QUERY
+
+}
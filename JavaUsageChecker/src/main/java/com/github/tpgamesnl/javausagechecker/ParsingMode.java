@@ -0,0 +1,36 @@
+package com.github.tpgamesnl.javausagechecker;
+
+import org.objectweb.asm.ClassReader;
+
+/**
+ * How much of a class file is parsed when checking it.
+ */
+public enum ParsingMode {
+
+    /**
+     * Parses everything, including stack map frames and local variable tables
+     */
+    FULL(0),
+    /**
+     * Skips stack map frames, which are never used by the checks
+     */
+    SKIP_FRAMES(ClassReader.SKIP_FRAMES),
+    /**
+     * Also skips all debug information, so code usages are reported without line numbers
+     */
+    CLASS_LEVEL(ClassReader.SKIP_FRAMES | ClassReader.SKIP_DEBUG);
+
+    private final int classReaderFlags;
+
+    ParsingMode(int classReaderFlags) {
+        this.classReaderFlags = classReaderFlags;
+    }
+
+    /**
+     * @return the flags to pass to {@link ClassReader#accept(org.objectweb.asm.ClassVisitor, int)}
+     */
+    public int getClassReaderFlags() {
+        return classReaderFlags;
+    }
+
+}
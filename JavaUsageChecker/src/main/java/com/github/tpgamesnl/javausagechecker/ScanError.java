@@ -0,0 +1,92 @@
+package com.github.tpgamesnl.javausagechecker;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A jar file or class that was skipped, as it exceeded one of the {@link EntryLimits} or couldn't be read,
+ * or a file or directory found while walking the scanned directories that couldn't be read.
+ */
+public class ScanError {
+
+    public enum Kind {
+        /**
+         * The uncompressed size exceeded {@link EntryLimits#getMaxSize()}
+         */
+        TOO_LARGE,
+        /**
+         * The jar file is nested in more than {@link JarFileTask#MAX_NESTING_DEPTH} other jar files
+         */
+        NESTED_TOO_DEEP,
+        /**
+         * The code of the class exceeded {@link EntryLimits#getMaxInstructions()}
+         */
+        TOO_MANY_INSTRUCTIONS,
+        /**
+         * Checking the class took longer than {@link EntryLimits#getTimeoutMillis()}
+         */
+        TIMED_OUT,
+        /**
+         * The class file couldn't be parsed
+         */
+        MALFORMED,
+        /**
+         * The jar file or entry, or a file or directory in a scanned directory, couldn't be read
+         */
+        UNREADABLE
+    }
+
+    private final Kind kind;
+    private final String jarFileName;
+    @Nullable
+    private final String entryName;
+    private final String message;
+    @Nullable
+    private final Throwable cause;
+
+    /**
+     * @param entryName the name of the entry within the jar file, or {@code null} if the jar file itself was skipped
+     * @param cause the exception the entry was skipped for, if any
+     */
+    public ScanError(Kind kind, String jarFileName, @Nullable String entryName, String message, @Nullable Throwable cause) {
+        this.kind = kind;
+        this.jarFileName = jarFileName;
+        this.entryName = entryName;
+        this.message = message;
+        this.cause = cause;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public String getJarFileName() {
+        return jarFileName;
+    }
+
+    @Nullable
+    public String getEntryName() {
+        return entryName;
+    }
+
+    /**
+     * @return the jar file, followed by the entry in it if any, like {@code plugin.jar!/com/example/Main.class}
+     */
+    public String getLocation() {
+        return entryName == null ? jarFileName : jarFileName + "!/" + entryName;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    @Nullable
+    public Throwable getCause() {
+        return cause;
+    }
+
+    @Override
+    public String toString() {
+        return getLocation() + " skipped: " + kind + " (" + message + ")";
+    }
+
+}
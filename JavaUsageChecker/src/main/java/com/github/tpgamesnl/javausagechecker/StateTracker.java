@@ -11,11 +11,35 @@ public enum State {
         CHECKING_CLASSES
     }
 
+    /**
+     * @return a new state tracker ignoring all updates, used if none is set
+     */
+    public static StateTracker silent() {
+        return new StateTracker() {
+            @Override
+            protected void updateState(State state) {
+            }
+
+            @Override
+            protected void jarOpenedCountUpdated(int count) {
+            }
+
+            @Override
+            protected void classesFoundCountUpdated(int count) {
+            }
+
+            @Override
+            protected void classesCheckedCountUpdated(int count) {
+            }
+        };
+    }
+
     private final AtomicInteger jarOpenedCount = new AtomicInteger();
+    private final AtomicInteger classesFoundCount = new AtomicInteger();
     private final AtomicInteger classesCheckedCount = new AtomicInteger();
     private final AtomicReference<State> state = new AtomicReference<>(State.STOPPED);
-    private int totalJarCount = -1;
-    private int totalClassCount = -1;
+    private final AtomicInteger totalJarCount = new AtomicInteger(-1);
+    private volatile int totalClassCount = -1;
 
     public void setState(State state) {
         this.state.set(state);
@@ -26,32 +50,71 @@ protected State getState() {
         return this.state.get();
     }
 
-    abstract void updateState(State state);
+    /**
+     * Called once the scan enters the given state
+     */
+    protected abstract void updateState(State state);
 
-    abstract void jarOpenedCountUpdated(int count);
+    /**
+     * The callbacks below are called by the worker threads, possibly concurrently, so they should return quickly
+     */
+    protected abstract void jarOpenedCountUpdated(int count);
 
-    abstract void classesCheckedCountUpdated(int count);
+    protected abstract void classesFoundCountUpdated(int count);
+
+    protected abstract void classesCheckedCountUpdated(int count);
 
     public void incrementJarOpenedCount() {
         int newCount = jarOpenedCount.incrementAndGet();
         jarOpenedCountUpdated(newCount);
     }
 
+    /**
+     * Called for every class found while jars are still being opened,
+     * as the {@link #getTotalClassCount() total class count} is only known once all jars have been opened.
+     */
+    public void incrementClassesFoundCount() {
+        addClassesFoundCount(1);
+    }
+
+    public void addClassesFoundCount(int amount) {
+        int newCount = classesFoundCount.addAndGet(amount);
+        classesFoundCountUpdated(newCount);
+    }
+
     public void incrementClassesCheckedCount() {
-        int newCount = classesCheckedCount.incrementAndGet();
+        addClassesCheckedCount(1);
+    }
+
+    public void addClassesCheckedCount(int amount) {
+        int newCount = classesCheckedCount.addAndGet(amount);
         classesCheckedCountUpdated(newCount);
     }
 
     protected int getTotalJarCount() {
-        return totalJarCount;
+        return totalJarCount.get();
+    }
+
+    protected int getClassesFoundCount() {
+        return classesFoundCount.get();
     }
 
+    /**
+     * @return the total amount of classes, or {@code -1} if not all jars have been opened yet
+     */
     protected int getTotalClassCount() {
         return totalClassCount;
     }
 
     public void setTotalJarCount(int totalJarCount) {
-        this.totalJarCount = totalJarCount;
+        this.totalJarCount.set(totalJarCount);
+    }
+
+    /**
+     * Called for every nested jar file found, as those aren't part of the initial total
+     */
+    public void incrementTotalJarCount() {
+        totalJarCount.incrementAndGet();
     }
 
     public void setTotalClassCount(int totalClassCount) {
@@ -62,6 +125,7 @@ public void setTotalClassCount(int totalClassCount) {
     public String toString() {
         return "StateTracker{" +
                 "jarOpenedCount=" + jarOpenedCount +
+                ", classesFoundCount=" + classesFoundCount +
                 ", classesCheckedCount=" + classesCheckedCount +
                 ", totalJarCount=" + totalJarCount +
                 ", totalClassCount=" + totalClassCount +
@@ -10,12 +10,12 @@
 
 public class UsageCheckerCV extends ClassVisitor {
 
-    protected final JavaUsageChecker javaUsageChecker;
+    protected final UsageListener usageListener;
     protected final ClassLocation classLocation;
 
-    public UsageCheckerCV(ClassVisitor classVisitor, JavaUsageChecker javaUsageChecker, String jarFileName, String className) {
+    public UsageCheckerCV(ClassVisitor classVisitor, UsageListener usageListener, String jarFileName, String className) {
         super(Opcodes.ASM9, classVisitor);
-        this.javaUsageChecker = javaUsageChecker;
+        this.usageListener = usageListener;
         this.classLocation = new ClassLocation(jarFileName, className);
     }
 
@@ -24,9 +24,9 @@ public void visit(int version, int access, String name, String signature, String
         super.visit(version, access, name, signature, superName, interfaces);
 
         if (superName != null)
-            javaUsageChecker.reportClassUsage(classLocation.extendsClass(), superName);
+            usageListener.reportClassUsage(classLocation, ClassLocation.Kind.EXTENDS_CLASS, -1, superName);
         for (String interfaceName : interfaces) {
-            javaUsageChecker.reportClassUsage(classLocation.implementsClass(), interfaceName);
+            usageListener.reportClassUsage(classLocation, ClassLocation.Kind.IMPLEMENTS_CLASS, -1, interfaceName);
         }
     }
 
@@ -46,11 +46,11 @@ public MethodCheckerMV(MethodVisitor mv, String methodName, String methodDescrip
             this.method = classLocation.inMethod(methodName, methodDescriptor);
 
             Type returnType = Type.getReturnType(methodDescriptor);
-            javaUsageChecker.reportClassUsage(method.inReturnType(), returnType.getClassName());
+            usageListener.reportClassUsage(method, ClassLocation.Kind.RETURN_TYPE, -1, getInternalClassName(returnType));
 
             Type[] argumentTypes = Type.getArgumentTypes(methodDescriptor);
             for (int i = 0; i < argumentTypes.length; i++) {
-                javaUsageChecker.reportClassUsage(method.inParameter(i), argumentTypes[i].getClassName());
+                usageListener.reportClassUsage(method, ClassLocation.Kind.PARAMETER, i, getInternalClassName(argumentTypes[i]));
             }
         }
 
@@ -69,30 +69,25 @@ public AnnotationVisitor visitParameterAnnotation(int parameter, String descript
         public void visitMethodInsn(int opcode, String owner, String name, String descriptor, boolean isInterface) {
             super.visitMethodInsn(opcode, owner, name, descriptor, isInterface);
 
-            ClassLocation.Method.Code code = method.inCode(lastLineNumber);
+            usageListener.reportMethodAccess(method, lastLineNumber, opcode, owner, name, descriptor, isInterface);
 
-            javaUsageChecker.reportMethodAccess(code, opcode, owner, name, descriptor, isInterface);
-
-            javaUsageChecker.reportClassUsage(code, owner);
+            usageListener.reportClassUsage(method, ClassLocation.Kind.CODE, lastLineNumber, owner);
         }
 
         @Override
         public void visitFieldInsn(int opcode, String owner, String name, String descriptor) {
             super.visitFieldInsn(opcode, owner, name, descriptor);
 
-            ClassLocation.Method.Code code = method.inCode(lastLineNumber);
-
-            javaUsageChecker.reportFieldAccess(code, opcode, owner, name, descriptor);
+            usageListener.reportFieldAccess(method, lastLineNumber, opcode, owner, name, descriptor);
 
-            javaUsageChecker.reportClassUsage(code, owner);
+            usageListener.reportClassUsage(method, ClassLocation.Kind.CODE, lastLineNumber, owner);
         }
 
         @Override
         public void visitTypeInsn(int opcode, String type) {
             super.visitTypeInsn(opcode, type);
 
-            ClassLocation.Method.Code code = method.inCode(lastLineNumber);
-            javaUsageChecker.reportClassUsage(code, type);
+            usageListener.reportClassUsage(method, ClassLocation.Kind.CODE, lastLineNumber, type);
         }
 
         @Override
@@ -100,7 +95,7 @@ public void visitLdcInsn(Object value) {
             super.visitLdcInsn(value);
 
             if (value instanceof Type) {
-                javaUsageChecker.reportClassUsage(method.inCode(lastLineNumber), ((Type) value).getClassName());
+                usageListener.reportClassUsage(method, ClassLocation.Kind.CODE, lastLineNumber, getInternalClassName((Type) value));
             }
         }
     }
@@ -108,8 +103,28 @@ public void visitLdcInsn(Object value) {
     @Override
     public FieldVisitor visitField(int access, String name, String descriptor, String signature, Object value) {
         Type type = Type.getType(descriptor);
-        javaUsageChecker.reportClassUsage(classLocation.inField(name), type.getClassName());
+        usageListener.reportClassUsage(classLocation.inField(name), ClassLocation.Kind.FIELD, -1, getInternalClassName(type));
 
         return super.visitField(access, name, descriptor, signature, value);
     }
+
+    /**
+     * @return the source name of the given type in internal form, like {@code java/lang/String[]} or {@code int}
+     */
+    private static String getInternalClassName(Type type) {
+        switch (type.getSort()) {
+            case Type.OBJECT:
+                return type.getInternalName();
+            case Type.ARRAY:
+                StringBuilder stringBuilder = new StringBuilder(getInternalClassName(type.getElementType()));
+                for (int i = 0; i < type.getDimensions(); i++) {
+                    stringBuilder.append("[]");
+                }
+                return stringBuilder.toString();
+            default:
+                // Primitive names are constants
+                return type.getClassName();
+        }
+    }
+
 }
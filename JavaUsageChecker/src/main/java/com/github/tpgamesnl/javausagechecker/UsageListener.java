@@ -0,0 +1,29 @@
+package com.github.tpgamesnl.javausagechecker;
+
+/**
+ * Receives every usage found by a {@link UsageCheckerCV}, before any query has been checked.
+ * Owner and class names are passed in their internal form.
+ * <p>
+ * Usages are passed with the shared location they were found in, so a listener only has to
+ * {@link ClassLocation#locate(ClassLocation.Kind, int) derive} their exact location if it needs it.
+ */
+public interface UsageListener {
+
+    /**
+     * @param lineNumber the line number of the access, or {@code -1} if unknown
+     */
+    void reportMethodAccess(ClassLocation.Method method, int lineNumber, int opcode, String owner, String name, String descriptor, boolean isInterface);
+
+    /**
+     * @param lineNumber the line number of the access, or {@code -1} if unknown
+     */
+    void reportFieldAccess(ClassLocation.Method method, int lineNumber, int opcode, String owner, String name, String descriptor);
+
+    /**
+     * @param parent the class, field or method location the class is used in, see {@link ClassLocation.Kind#getParentKind()}
+     * @param kind the kind of location within the parent the class is used in
+     * @param number the line number or parameter index, see {@link ClassLocation#locate(ClassLocation.Kind, int)}
+     */
+    void reportClassUsage(ClassLocation parent, ClassLocation.Kind kind, int number, String name);
+
+}
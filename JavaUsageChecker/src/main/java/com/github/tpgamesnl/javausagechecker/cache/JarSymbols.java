@@ -0,0 +1,410 @@
+package com.github.tpgamesnl.javausagechecker.cache;
+
+import com.github.tpgamesnl.javausagechecker.ClassLocation;
+import com.github.tpgamesnl.javausagechecker.UsageListener;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compact table of all usages in a jar file, which can be {@link #replay(UsageListener, String, boolean) replayed}
+ * to check queries against the jar without opening it again.
+ * <p>
+ * Every usage is stored as a fixed amount of ints, strings are stored once in a shared string table.
+ */
+public class JarSymbols {
+
+    public static final int EVENT_METHOD_ACCESS = 0;
+    public static final int EVENT_FIELD_ACCESS = 1;
+    public static final int EVENT_CLASS_USAGE = 2;
+
+    private static final ClassLocation.Kind[] LOCATION_KINDS = ClassLocation.Kind.values();
+
+    /**
+     * Event kind, location kind, class name, member name, method descriptor,
+     * number (line number or parameter index), opcode, owner, name, descriptor, is interface
+     */
+    private static final int EVENT_SIZE = 11;
+    /**
+     * The columns of an event holding string ids
+     */
+    private static final int[] STRING_COLUMNS = {2, 3, 4, 7, 8, 9};
+    /**
+     * The amount of strings and events read before growing the tables, when reading untrusted counts
+     */
+    private static final int READ_CHUNK = 4096;
+
+    private final List<String> strings;
+    private final Map<String, Integer> stringIds = new HashMap<>();
+    private int[] events;
+    private int eventsLength;
+    private int classCount;
+    private final boolean lineNumbers;
+
+    /**
+     * @param lineNumbers whether the usages are recorded with line numbers
+     */
+    public JarSymbols(boolean lineNumbers) {
+        this(new ArrayList<>(), new int[EVENT_SIZE * 64], 0, 0, lineNumbers);
+    }
+
+    private JarSymbols(List<String> strings, int[] events, int eventsLength, int classCount, boolean lineNumbers) {
+        this.strings = strings;
+        this.events = events;
+        this.eventsLength = eventsLength;
+        this.classCount = classCount;
+        this.lineNumbers = lineNumbers;
+    }
+
+    /**
+     * @return the usages of the single class recorded by the given recorder, without any spare capacity
+     */
+    public static JarSymbols of(Recorder recorder, boolean lineNumbers) {
+        JarSymbols jarSymbols = new JarSymbols(new ArrayList<>(recorder.strings.size()), new int[0], 0, 0, lineNumbers);
+        jarSymbols.add(recorder);
+        return jarSymbols;
+    }
+
+    public int getClassCount() {
+        return classCount;
+    }
+
+    public boolean hasLineNumbers() {
+        return lineNumbers;
+    }
+
+    /**
+     * Adds the usages of a single class, recorded by the given recorder.
+     */
+    public synchronized void add(Recorder recorder) {
+        int[] stringIdMapping = new int[recorder.strings.size()];
+        for (int i = 0; i < stringIdMapping.length; i++) {
+            stringIdMapping[i] = getStringId(recorder.strings.get(i));
+        }
+
+        int[] recorded = recorder.events;
+        ensureCapacity(eventsLength + recorder.eventsLength);
+        for (int i = 0; i < recorder.eventsLength; i += EVENT_SIZE) {
+            events[eventsLength + i] = recorded[i];
+            events[eventsLength + i + 1] = recorded[i + 1];
+            events[eventsLength + i + 2] = mapString(stringIdMapping, recorded[i + 2]);
+            events[eventsLength + i + 3] = mapString(stringIdMapping, recorded[i + 3]);
+            events[eventsLength + i + 4] = mapString(stringIdMapping, recorded[i + 4]);
+            events[eventsLength + i + 5] = recorded[i + 5];
+            events[eventsLength + i + 6] = recorded[i + 6];
+            events[eventsLength + i + 7] = mapString(stringIdMapping, recorded[i + 7]);
+            events[eventsLength + i + 8] = mapString(stringIdMapping, recorded[i + 8]);
+            events[eventsLength + i + 9] = mapString(stringIdMapping, recorded[i + 9]);
+            events[eventsLength + i + 10] = recorded[i + 10];
+        }
+        eventsLength += recorder.eventsLength;
+        classCount++;
+    }
+
+    private int getStringId(String s) {
+        return stringIds.computeIfAbsent(s, k -> {
+            strings.add(s);
+            return strings.size() - 1;
+        });
+    }
+
+    private static int mapString(int[] stringIdMapping, int id) {
+        return id == -1 ? -1 : stringIdMapping[id];
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (events.length < capacity) {
+            events = Arrays.copyOf(events, Math.max(capacity, events.length * 2));
+        }
+    }
+
+    /**
+     * Passes all recorded usages to the given listener, in the order they were recorded.
+     *
+     * @param stripLineNumbers whether to pass {@code -1} as line numbers, like when the classes are parsed without debug information
+     */
+    public void replay(UsageListener listener, String jarFileName, boolean stripLineNumbers) {
+        // Consecutive usages mostly share their parent location, like when they were found
+        ClassLocation parent = null;
+        int parentOffset = -1;
+        for (int i = 0; i < getEventCount(); i++) {
+            ClassLocation.Kind kind = getLocationKind(i);
+            ClassLocation.Kind parentKind = kind.getParentKind();
+            int offset = i * EVENT_SIZE;
+            if (parent == null || parent.getKind() != parentKind
+                    || events[offset + 2] != events[parentOffset + 2]
+                    || events[offset + 3] != events[parentOffset + 3]
+                    || events[offset + 4] != events[parentOffset + 4]) {
+                parent = ClassLocation.create(parentKind, jarFileName, getClassName(i),
+                        getMemberName(i), getMethodDescriptor(i), -1);
+                parentOffset = offset;
+            }
+            int number = stripLineNumbers && kind == ClassLocation.Kind.CODE ? -1 : getNumber(i);
+
+            switch (getEventKind(i)) {
+                case EVENT_METHOD_ACCESS:
+                    listener.reportMethodAccess((ClassLocation.Method) parent, number, getOpcode(i), getOwner(i),
+                            getName(i), getDescriptor(i), isInterface(i));
+                    break;
+                case EVENT_FIELD_ACCESS:
+                    listener.reportFieldAccess((ClassLocation.Method) parent, number, getOpcode(i), getOwner(i),
+                            getName(i), getDescriptor(i));
+                    break;
+                case EVENT_CLASS_USAGE:
+                    listener.reportClassUsage(parent, kind, number, getOwner(i));
+                    break;
+            }
+        }
+    }
+
+    public int getEventCount() {
+        return eventsLength / EVENT_SIZE;
+    }
+
+    /**
+     * @return {@link #EVENT_METHOD_ACCESS}, {@link #EVENT_FIELD_ACCESS} or {@link #EVENT_CLASS_USAGE}
+     */
+    public int getEventKind(int event) {
+        return events[event * EVENT_SIZE];
+    }
+
+    public ClassLocation.Kind getLocationKind(int event) {
+        return LOCATION_KINDS[events[event * EVENT_SIZE + 1]];
+    }
+
+    public String getClassName(int event) {
+        return getString(events[event * EVENT_SIZE + 2]);
+    }
+
+    /**
+     * @see ClassLocation#create(ClassLocation.Kind, String, String, String, String, int)
+     */
+    @Nullable
+    public String getMemberName(int event) {
+        return getString(events[event * EVENT_SIZE + 3]);
+    }
+
+    @Nullable
+    public String getMethodDescriptor(int event) {
+        return getString(events[event * EVENT_SIZE + 4]);
+    }
+
+    /**
+     * @see ClassLocation#create(ClassLocation.Kind, String, String, String, String, int)
+     */
+    public int getNumber(int event) {
+        return events[event * EVENT_SIZE + 5];
+    }
+
+    public int getOpcode(int event) {
+        return events[event * EVENT_SIZE + 6];
+    }
+
+    /**
+     * @return the owner of the accessed member, or the used class
+     */
+    public String getOwner(int event) {
+        return getString(events[event * EVENT_SIZE + 7]);
+    }
+
+    @Nullable
+    public String getName(int event) {
+        return getString(events[event * EVENT_SIZE + 8]);
+    }
+
+    @Nullable
+    public String getDescriptor(int event) {
+        return getString(events[event * EVENT_SIZE + 9]);
+    }
+
+    public boolean isInterface(int event) {
+        return events[event * EVENT_SIZE + 10] != 0;
+    }
+
+    private String getString(int id) {
+        return id == -1 ? null : strings.get(id);
+    }
+
+    public void write(DataOutputStream out) throws IOException {
+        out.writeBoolean(lineNumbers);
+        out.writeInt(classCount);
+        out.writeInt(strings.size());
+        for (String string : strings) {
+            out.writeUTF(string);
+        }
+        out.writeInt(eventsLength);
+        for (int i = 0; i < eventsLength; i++) {
+            writeVarInt(out, events[i]);
+        }
+    }
+
+    /**
+     * Writes an int that is at least {@code -1} in as few bytes as possible, 7 bits per byte
+     */
+    public static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        int unsigned = value + 1;
+        while ((unsigned & ~0x7F) != 0) {
+            out.writeByte((unsigned & 0x7F) | 0x80);
+            unsigned >>>= 7;
+        }
+        out.writeByte(unsigned);
+    }
+
+    /**
+     * Reads an int written by {@link #writeVarInt(DataOutputStream, int)}
+     */
+    public static int readVarInt(DataInputStream in) throws IOException {
+        int unsigned = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readUnsignedByte();
+            unsigned |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return unsigned - 1;
+        }
+        throw new IOException("Malformed variable-length int");
+    }
+
+    /**
+     * Reads symbols written by {@link #write(DataOutputStream)}, checking that the counts and events are valid,
+     * so corrupt input can't be replayed, nor allocate more than its own size
+     *
+     * @throws IOException if the input is invalid or truncated
+     */
+    public static JarSymbols read(DataInputStream in) throws IOException {
+        boolean lineNumbers = in.readBoolean();
+        int classCount = in.readInt();
+        if (classCount < 0)
+            throw new IOException("Invalid class count " + classCount);
+
+        int stringCount = in.readInt();
+        if (stringCount < 0)
+            throw new IOException("Invalid string count " + stringCount);
+        // Grown while reading, as the counts can't be trusted before the input runs out
+        List<String> strings = new ArrayList<>(Math.min(stringCount, READ_CHUNK));
+        for (int i = 0; i < stringCount; i++) {
+            strings.add(in.readUTF());
+        }
+
+        int eventsLength = in.readInt();
+        if (eventsLength < 0 || eventsLength % EVENT_SIZE != 0)
+            throw new IOException("Invalid event table length " + eventsLength);
+        int[] events = new int[Math.min(eventsLength, READ_CHUNK * EVENT_SIZE)];
+        for (int i = 0; i < eventsLength; i++) {
+            if (i == events.length) {
+                events = Arrays.copyOf(events, (int) Math.min(eventsLength, events.length * 2L));
+            }
+            events[i] = readVarInt(in);
+        }
+        for (int offset = 0; offset < eventsLength; offset += EVENT_SIZE) {
+            checkEvent(events, offset, stringCount);
+        }
+        return new JarSymbols(strings, events, eventsLength, classCount, lineNumbers);
+    }
+
+    private static void checkEvent(int[] events, int offset, int stringCount) throws IOException {
+        int eventKind = events[offset];
+        int locationKind = events[offset + 1];
+        if (eventKind < EVENT_METHOD_ACCESS || eventKind > EVENT_CLASS_USAGE
+                || locationKind < 0 || locationKind >= LOCATION_KINDS.length)
+            throw new IOException("Invalid event kind " + eventKind + " or location kind " + locationKind);
+        // Member accesses are only found in code, reported with their method
+        if (eventKind != EVENT_CLASS_USAGE && LOCATION_KINDS[locationKind].getParentKind() != ClassLocation.Kind.METHOD)
+            throw new IOException("Invalid location kind " + LOCATION_KINDS[locationKind] + " of a member access");
+
+        for (int column : STRING_COLUMNS) {
+            int id = events[offset + column];
+            // Only the class name and owner are always present
+            boolean required = column == 2 || column == 7;
+            if (id < (required ? 0 : -1) || id >= stringCount)
+                throw new IOException("Invalid string id " + id);
+        }
+    }
+
+    /**
+     * Records the usages of a single class, while passing them on to another listener.
+     * Not thread-safe: every class should be recorded by its own recorder.
+     */
+    public static class Recorder implements UsageListener {
+
+        private final UsageListener delegate;
+
+        private final List<String> strings = new ArrayList<>();
+        private final Map<String, Integer> stringIds = new HashMap<>();
+        private int[] events = new int[EVENT_SIZE * 16];
+        private int eventsLength;
+
+        public Recorder(UsageListener delegate) {
+            this.delegate = delegate;
+        }
+
+        public boolean isEmpty() {
+            return eventsLength == 0;
+        }
+
+        @Override
+        public void reportMethodAccess(ClassLocation.Method method, int lineNumber, int opcode, String owner, String name, String descriptor, boolean isInterface) {
+            record(EVENT_METHOD_ACCESS, method, ClassLocation.Kind.CODE, lineNumber, opcode, owner, name, descriptor, isInterface);
+            delegate.reportMethodAccess(method, lineNumber, opcode, owner, name, descriptor, isInterface);
+        }
+
+        @Override
+        public void reportFieldAccess(ClassLocation.Method method, int lineNumber, int opcode, String owner, String name, String descriptor) {
+            record(EVENT_FIELD_ACCESS, method, ClassLocation.Kind.CODE, lineNumber, opcode, owner, name, descriptor, false);
+            delegate.reportFieldAccess(method, lineNumber, opcode, owner, name, descriptor);
+        }
+
+        @Override
+        public void reportClassUsage(ClassLocation parent, ClassLocation.Kind kind, int number, String name) {
+            record(EVENT_CLASS_USAGE, parent, kind, number, 0, name, null, null, false);
+            delegate.reportClassUsage(parent, kind, number, name);
+        }
+
+        private void record(int event, ClassLocation parent, ClassLocation.Kind kind, int number,
+                            int opcode, String owner, String name, String descriptor, boolean isInterface) {
+            if (events.length < eventsLength + EVENT_SIZE) {
+                events = Arrays.copyOf(events, events.length * 2);
+            }
+
+            int memberName = -1;
+            int methodDescriptor = -1;
+            if (parent instanceof ClassLocation.Method) {
+                ClassLocation.Method method = (ClassLocation.Method) parent;
+                memberName = getStringId(method.getMethodName());
+                methodDescriptor = getStringId(method.getMethodDescriptor());
+            } else if (parent instanceof ClassLocation.Field) {
+                memberName = getStringId(((ClassLocation.Field) parent).getName());
+            }
+            if (kind != ClassLocation.Kind.CODE && kind != ClassLocation.Kind.PARAMETER) {
+                number = -1;
+            }
+
+            events[eventsLength++] = event;
+            events[eventsLength++] = kind.ordinal();
+            events[eventsLength++] = getStringId(parent.getClassName());
+            events[eventsLength++] = memberName;
+            events[eventsLength++] = methodDescriptor;
+            events[eventsLength++] = number;
+            events[eventsLength++] = opcode;
+            events[eventsLength++] = getStringId(owner);
+            events[eventsLength++] = name == null ? -1 : getStringId(name);
+            events[eventsLength++] = descriptor == null ? -1 : getStringId(descriptor);
+            events[eventsLength++] = isInterface ? 1 : 0;
+        }
+
+        private int getStringId(String s) {
+            return stringIds.computeIfAbsent(s, k -> {
+                strings.add(s);
+                return strings.size() - 1;
+            });
+        }
+
+    }
+
+}
@@ -0,0 +1,128 @@
+package com.github.tpgamesnl.javausagechecker.cache;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * An on-disk cache of the {@link JarSymbols} of jar files, so unchanged jar files don't have to be opened again.
+ * <p>
+ * Every jar file has its own cache file, named after the hash of its path.
+ * A cache entry is only used if the size and modification time of the jar file haven't changed.
+ */
+public class ScanCache {
+
+    private static final int MAGIC = 0x4A554343;
+    /**
+     * Increment when the recorded usages or the file format change
+     */
+    private static final int VERSION = 3;
+
+    private final File directory;
+
+    public ScanCache(File directory) {
+        this.directory = directory;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @param lineNumbers whether the usages need to have line numbers
+     * @return the cached symbols of the given jar file, or {@code null} if there's no valid cache entry
+     */
+    @Nullable
+    public JarSymbols load(File jarFile, boolean lineNumbers) {
+        File cacheFile = getCacheFile(jarFile);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION)
+                return null;
+            if (!in.readUTF().equals(getPath(jarFile))
+                    || in.readLong() != jarFile.length()
+                    || in.readLong() != jarFile.lastModified())
+                return null;
+
+            // Closed to release the native memory of its inflater
+            try (InflaterInputStream inflaterIn = new InflaterInputStream(in)) {
+                JarSymbols jarSymbols = JarSymbols.read(new DataInputStream(new BufferedInputStream(inflaterIn)));
+                if (lineNumbers && !jarSymbols.hasLineNumbers())
+                    return null;
+                return jarSymbols;
+            }
+        } catch (FileNotFoundException e) {
+            return null;
+        } catch (IOException | RuntimeException e) {
+            // A corrupt cache file is only a cache miss, the jar file is scanned again
+            new RuntimeException("Error reading cache file " + cacheFile + ", ignoring it", e).printStackTrace();
+            return null;
+        }
+    }
+
+    public void store(File jarFile, JarSymbols jarSymbols) {
+        File cacheFile = getCacheFile(jarFile);
+        try {
+            Files.createDirectories(directory.toPath());
+
+            // Write to a temporary file first, so other runs never see partially written entries
+            File temporaryFile = File.createTempFile(cacheFile.getName(), ".tmp", directory);
+            try {
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporaryFile)))) {
+                    out.writeInt(MAGIC);
+                    out.writeInt(VERSION);
+                    out.writeUTF(getPath(jarFile));
+                    out.writeLong(jarFile.length());
+                    out.writeLong(jarFile.lastModified());
+
+                    Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+                    DeflaterOutputStream deflaterOut = new DeflaterOutputStream(out, deflater, 8192);
+                    DataOutputStream symbolsOut = new DataOutputStream(new BufferedOutputStream(deflaterOut));
+                    jarSymbols.write(symbolsOut);
+                    symbolsOut.flush();
+                    deflaterOut.finish();
+                    deflater.end();
+                }
+                Files.move(temporaryFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(temporaryFile.toPath());
+            }
+        } catch (IOException e) {
+            new RuntimeException("Error writing cache file " + cacheFile, e).printStackTrace();
+        }
+    }
+
+    private File getCacheFile(File jarFile) {
+        try {
+            MessageDigest messageDigest = MessageDigest.getInstance("SHA-1");
+            byte[] hash = messageDigest.digest(getPath(jarFile).getBytes(StandardCharsets.UTF_8));
+            StringBuilder name = new StringBuilder();
+            for (byte b : hash) {
+                name.append(String.format("%02x", b));
+            }
+            return new File(directory, name.append(".bin").toString());
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static String getPath(File file) {
+        return file.getAbsoluteFile().toPath().normalize().toString();
+    }
+
+}
@@ -0,0 +1,176 @@
+package com.github.tpgamesnl.javausagechecker.index;
+
+import com.github.tpgamesnl.javausagechecker.ClassLocation;
+import com.github.tpgamesnl.javausagechecker.JavaUsageChecker;
+import com.github.tpgamesnl.javausagechecker.Report;
+import com.github.tpgamesnl.javausagechecker.cache.JarSymbols;
+import com.github.tpgamesnl.javausagechecker.query.Query;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * An inverted index of all usages in a set of jar files, mapping every distinct used symbol
+ * (accessed method, accessed field or used class) to the locations using it.
+ * <p>
+ * Queries are checked once per symbol instead of once per usage, and only the locations of matching symbols are read.
+ * The index file is memory-mapped, so opening it is cheap regardless of its size.
+ * Indices are written by {@link UsageIndexWriter}.
+ */
+public class UsageIndex {
+
+    static final int MAGIC = 0x4A554349;
+    static final int VERSION = 2;
+
+    /**
+     * Event kind, opcode, owner, name, descriptor, is interface, first posting, posting count
+     */
+    static final int SYMBOL_SIZE = 8;
+    /**
+     * Jar file name, location kind, class name, member name, method descriptor, number
+     */
+    static final int POSTING_SIZE = 6;
+
+    private static final ClassLocation.Kind[] LOCATION_KINDS = ClassLocation.Kind.values();
+
+    public static UsageIndex open(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE)
+                throw new IOException("Index files over 2 GB are not supported");
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new UsageIndex(buffer);
+        }
+    }
+
+    private final ByteBuffer buffer;
+
+    private final int stringCount;
+    private final int stringOffsetsPosition;
+    private final int stringDataPosition;
+    private final String[] strings;
+
+    private final int symbolCount;
+    private final int symbolsPosition;
+    private final int postingCount;
+    private final int postingsPosition;
+
+    private UsageIndex(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION)
+            throw new IOException("Not a usage index, or one of an incompatible version");
+
+        stringCount = buffer.getInt(8);
+        stringOffsetsPosition = 12;
+        stringDataPosition = stringOffsetsPosition + (stringCount + 1) * 4;
+        strings = new String[stringCount];
+
+        int symbolCountPosition = stringDataPosition + buffer.getInt(stringOffsetsPosition + stringCount * 4);
+        symbolCount = buffer.getInt(symbolCountPosition);
+        symbolsPosition = symbolCountPosition + 4;
+
+        int postingCountPosition = symbolsPosition + symbolCount * SYMBOL_SIZE * 4;
+        postingCount = buffer.getInt(postingCountPosition);
+        postingsPosition = postingCountPosition + 4;
+    }
+
+    public int getSymbolCount() {
+        return symbolCount;
+    }
+
+    public int getUsageCount() {
+        return postingCount;
+    }
+
+    /**
+     * Strings are only decoded when first needed
+     */
+    @Nullable
+    private String getString(int id) {
+        if (id == -1)
+            return null;
+
+        String string = strings[id];
+        if (string == null) {
+            int start = buffer.getInt(stringOffsetsPosition + id * 4);
+            int end = buffer.getInt(stringOffsetsPosition + (id + 1) * 4);
+            byte[] bytes = new byte[end - start];
+            ByteBuffer duplicate = buffer.duplicate();
+            ((Buffer) duplicate).position(stringDataPosition + start);
+            duplicate.get(bytes);
+            string = new String(bytes, StandardCharsets.UTF_8);
+            // Racy, but strings are immutable and always decoded equally
+            strings[id] = string;
+        }
+        return string;
+    }
+
+    private int getSymbolInt(int symbol, int field) {
+        return buffer.getInt(symbolsPosition + (symbol * SYMBOL_SIZE + field) * 4);
+    }
+
+    private int getPostingInt(int posting, int field) {
+        return buffer.getInt(postingsPosition + (posting * POSTING_SIZE + field) * 4);
+    }
+
+    /**
+     * Checks the queries of the given checker against all symbols in this index,
+     * {@link JavaUsageChecker#report(Report) reporting} every usage of the matching symbols to it.
+     * This reports the same usages as scanning the indexed jar files with that checker.
+     *
+     * @return the amount of reports
+     */
+    public int query(JavaUsageChecker javaUsageChecker) {
+        int reportCount = 0;
+        for (int symbol = 0; symbol < symbolCount; symbol++) {
+            int opcode = getSymbolInt(symbol, 1);
+            String owner = getString(getSymbolInt(symbol, 2));
+            String name = getString(getSymbolInt(symbol, 3));
+            String descriptor = getString(getSymbolInt(symbol, 4));
+
+            List<Query> matches;
+            switch (getSymbolInt(symbol, 0)) {
+                case JarSymbols.EVENT_METHOD_ACCESS:
+                    matches = javaUsageChecker.matchMethodAccess(opcode, owner, name, descriptor, getSymbolInt(symbol, 5) != 0);
+                    break;
+                case JarSymbols.EVENT_FIELD_ACCESS:
+                    matches = javaUsageChecker.matchFieldAccess(opcode, owner, name, descriptor);
+                    break;
+                case JarSymbols.EVENT_CLASS_USAGE:
+                    matches = javaUsageChecker.matchClassUsage(owner);
+                    break;
+                default:
+                    continue;
+            }
+            if (matches.isEmpty())
+                continue;
+
+            int firstPosting = getSymbolInt(symbol, 6);
+            int postings = getSymbolInt(symbol, 7);
+            for (int posting = firstPosting; posting < firstPosting + postings; posting++) {
+                ClassLocation location = ClassLocation.create(
+                        LOCATION_KINDS[getPostingInt(posting, 1)],
+                        getString(getPostingInt(posting, 0)),
+                        getString(getPostingInt(posting, 2)),
+                        getString(getPostingInt(posting, 3)),
+                        getString(getPostingInt(posting, 4)),
+                        getPostingInt(posting, 5)
+                );
+                for (Query query : matches) {
+                    javaUsageChecker.report(new Report(location, query));
+                    reportCount++;
+                }
+            }
+        }
+        return reportCount;
+    }
+
+}
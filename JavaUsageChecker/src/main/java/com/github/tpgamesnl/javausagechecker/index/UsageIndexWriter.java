@@ -0,0 +1,154 @@
+package com.github.tpgamesnl.javausagechecker.index;
+
+import com.github.tpgamesnl.javausagechecker.cache.JarSymbols;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds a {@link UsageIndex} from the {@link JarSymbols} of all scanned jar files.
+ */
+public class UsageIndexWriter {
+
+    private final List<String> strings = new ArrayList<>();
+    private final Map<String, Integer> stringIds = new HashMap<>();
+
+    private final Map<Symbol, Symbol> symbols = new LinkedHashMap<>();
+
+    public synchronized void add(String jarFileName, JarSymbols jarSymbols) {
+        int jar = getStringId(jarFileName);
+        for (int i = 0; i < jarSymbols.getEventCount(); i++) {
+            Symbol key = new Symbol(
+                    jarSymbols.getEventKind(i),
+                    jarSymbols.getOpcode(i),
+                    getStringId(jarSymbols.getOwner(i)),
+                    getStringId(jarSymbols.getName(i)),
+                    getStringId(jarSymbols.getDescriptor(i)),
+                    jarSymbols.isInterface(i)
+            );
+            Symbol symbol = symbols.computeIfAbsent(key, k -> key);
+
+            if (symbol.postings.length < symbol.postingsLength + UsageIndex.POSTING_SIZE) {
+                symbol.postings = Arrays.copyOf(symbol.postings, symbol.postings.length * 2);
+            }
+            int[] postings = symbol.postings;
+            int length = symbol.postingsLength;
+            postings[length] = jar;
+            postings[length + 1] = jarSymbols.getLocationKind(i).ordinal();
+            postings[length + 2] = getStringId(jarSymbols.getClassName(i));
+            postings[length + 3] = getStringId(jarSymbols.getMemberName(i));
+            postings[length + 4] = getStringId(jarSymbols.getMethodDescriptor(i));
+            postings[length + 5] = jarSymbols.getNumber(i);
+            symbol.postingsLength += UsageIndex.POSTING_SIZE;
+        }
+    }
+
+    private int getStringId(String s) {
+        if (s == null)
+            return -1;
+        return stringIds.computeIfAbsent(s, k -> {
+            strings.add(s);
+            return strings.size() - 1;
+        });
+    }
+
+    /**
+     * Writes the index in the format read by {@link UsageIndex}.
+     */
+    public synchronized void write(File file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(UsageIndex.MAGIC);
+            out.writeInt(UsageIndex.VERSION);
+
+            List<byte[]> encodedStrings = new ArrayList<>(strings.size());
+            out.writeInt(strings.size());
+            int offset = 0;
+            for (String string : strings) {
+                byte[] encoded = string.getBytes(StandardCharsets.UTF_8);
+                encodedStrings.add(encoded);
+                out.writeInt(offset);
+                offset += encoded.length;
+            }
+            out.writeInt(offset);
+            for (byte[] encoded : encodedStrings) {
+                out.write(encoded);
+            }
+
+            out.writeInt(symbols.size());
+            int firstPosting = 0;
+            for (Symbol symbol : symbols.keySet()) {
+                int postingCount = symbol.postingsLength / UsageIndex.POSTING_SIZE;
+                out.writeInt(symbol.eventKind);
+                out.writeInt(symbol.opcode);
+                out.writeInt(symbol.owner);
+                out.writeInt(symbol.name);
+                out.writeInt(symbol.descriptor);
+                out.writeInt(symbol.isInterface ? 1 : 0);
+                out.writeInt(firstPosting);
+                out.writeInt(postingCount);
+                firstPosting += postingCount;
+            }
+
+            out.writeInt(firstPosting);
+            for (Symbol symbol : symbols.keySet()) {
+                for (int i = 0; i < symbol.postingsLength; i++) {
+                    out.writeInt(symbol.postings[i]);
+                }
+            }
+        }
+    }
+
+    private static class Symbol {
+
+        private final int eventKind;
+        private final int opcode;
+        private final int owner;
+        private final int name;
+        private final int descriptor;
+        private final boolean isInterface;
+
+        private int[] postings = new int[UsageIndex.POSTING_SIZE * 4];
+        private int postingsLength;
+
+        private Symbol(int eventKind, int opcode, int owner, int name, int descriptor, boolean isInterface) {
+            this.eventKind = eventKind;
+            this.opcode = opcode;
+            this.owner = owner;
+            this.name = name;
+            this.descriptor = descriptor;
+            this.isInterface = isInterface;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Symbol)) return false;
+            Symbol symbol = (Symbol) o;
+            return eventKind == symbol.eventKind && opcode == symbol.opcode && owner == symbol.owner
+                    && name == symbol.name && descriptor == symbol.descriptor && isInterface == symbol.isInterface;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = eventKind;
+            result = 31 * result + opcode;
+            result = 31 * result + owner;
+            result = 31 * result + name;
+            result = 31 * result + descriptor;
+            result = 31 * result + (isInterface ? 1 : 0);
+            return result;
+        }
+
+    }
+
+}
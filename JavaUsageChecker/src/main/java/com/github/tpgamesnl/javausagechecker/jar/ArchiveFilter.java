@@ -0,0 +1,59 @@
+package com.github.tpgamesnl.javausagechecker.jar;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Decides which files found in scanned directories are scanned as jar files
+ */
+public enum ArchiveFilter {
+    /**
+     * Only files named like jar or zip files, see {@link #hasArchiveExtension(String)}
+     */
+    EXTENSION {
+        @Override
+        public boolean accept(Path file) {
+            return hasArchiveExtension(file.getFileName().toString());
+        }
+    },
+    /**
+     * Only files starting with the signature of a zip file, whatever their name.
+     * This reads the start of every file, but also finds archives with other extensions, like {@code .war} files.
+     */
+    MAGIC {
+        @Override
+        public boolean accept(Path file) throws IOException {
+            byte[] magic = new byte[4];
+            try (InputStream in = Files.newInputStream(file)) {
+                int length = 0;
+                int read;
+                while (length < magic.length && (read = in.read(magic, length, magic.length - length)) != -1) {
+                    length += read;
+                }
+                if (length < magic.length)
+                    return false;
+            }
+            // A local file header, or the end of the central directory of an empty zip file
+            return magic[0] == 'P' && magic[1] == 'K'
+                    && (magic[2] == 3 && magic[3] == 4 || magic[2] == 5 && magic[3] == 6);
+        }
+    };
+
+    /**
+     * @param file a regular file
+     * @throws IOException if the file had to be read, but couldn't be
+     */
+    public abstract boolean accept(Path file) throws IOException;
+
+    /**
+     * @return whether the given file name ends with {@code .jar} or {@code .zip}, ignoring case
+     */
+    public static boolean hasArchiveExtension(String name) {
+        name = name.toLowerCase(Locale.ROOT);
+        return name.endsWith(".jar") || name.endsWith(".zip");
+    }
+
+}
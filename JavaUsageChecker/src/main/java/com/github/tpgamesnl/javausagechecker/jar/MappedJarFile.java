@@ -0,0 +1,377 @@
+package com.github.tpgamesnl.javausagechecker.jar;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.CRC32;
+import java.util.zip.Inflater;
+
+/**
+ * A jar (zip) file that is memory-mapped once and read without any streams.
+ * <p>
+ * The central directory is parsed when opening, after which the file handle is closed again.
+ * Entries are copied or inflated straight from the mapping into {@link Buffers} reused by the reading thread.
+ * Jar files stored within jar files can be {@link #openNested(Entry, Buffers) opened} the same way.
+ */
+public class MappedJarFile implements Closeable {
+
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int END_SIGNATURE = 0x06054b50;
+    private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+    private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+
+    private static final int END_SIZE = 22;
+    private static final int ZIP64_LOCATOR_SIZE = 20;
+    private static final int MAX_COMMENT_LENGTH = 0xFFFF;
+    private static final int ZIP64_EXTRA_ID = 0x0001;
+
+    private static final int METHOD_STORED = 0;
+    private static final int METHOD_DEFLATED = 8;
+
+    public static MappedJarFile open(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE)
+                throw new IOException("Jar files over 2 GB are not supported");
+            // The mapping stays valid after the channel is closed
+            return new MappedJarFile(file.getPath(), channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    private final String name;
+    private volatile ByteBuffer buffer;
+    private final List<Entry> entries;
+
+    /**
+     * @param buffer the contents of the jar file
+     */
+    public MappedJarFile(String name, ByteBuffer buffer) throws IOException {
+        this.name = name;
+        this.buffer = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        this.entries = Collections.unmodifiableList(readCentralDirectory(this.buffer));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * Reads the given entry into the given buffers of the current thread,
+     * which is only valid until these buffers are used to read the next entry.
+     *
+     * @return the buffer, holding the entry in its first {@link Entry#getSize()} bytes
+     */
+    public byte[] read(Entry entry, Buffers buffers) throws IOException {
+        byte[] output = buffers.output(entry.size);
+        read(entry, output, buffers);
+        return output;
+    }
+
+    /**
+     * Reads the given entry like {@link #read(Entry, Buffers)}, checking it against its CRC-32 from the central directory,
+     * so the CRC-32 can be trusted to identify the contents
+     *
+     * @throws IOException if the contents don't match the CRC-32
+     */
+    public byte[] readVerified(Entry entry, Buffers buffers) throws IOException {
+        byte[] output = buffers.output(entry.size);
+        read(entry, output, buffers);
+
+        CRC32 crc = buffers.crc;
+        crc.reset();
+        crc.update(output, 0, entry.size);
+        if ((int) crc.getValue() != entry.crc)
+            throw new IOException("CRC-32 mismatch of " + entry.name + " in " + name);
+        return output;
+    }
+
+    /**
+     * Opens a jar file stored as an entry of this jar file. Stored entries are used straight from the mapping,
+     * deflated ones are inflated into memory once.
+     * The nested jar file is named after this jar file and the entry, like {@code outer.jar!/libs/inner.jar}.
+     */
+    public MappedJarFile openNested(Entry entry, Buffers buffers) throws IOException {
+        ByteBuffer contents;
+        if (entry.method == METHOD_STORED) {
+            contents = getData(entry);
+            // Through Buffer, as ByteBuffer only overrides these since Java 9
+            ((Buffer) contents).limit(contents.position() + entry.size);
+            contents = contents.slice();
+        } else {
+            byte[] bytes = new byte[entry.size];
+            read(entry, bytes, buffers);
+            contents = ByteBuffer.wrap(bytes);
+        }
+        return new MappedJarFile(name + "!/" + entry.name, contents);
+    }
+
+    private void read(Entry entry, byte[] output, Buffers buffers) throws IOException {
+        ByteBuffer data = getData(entry);
+        switch (entry.method) {
+            case METHOD_STORED:
+                data.get(output, 0, entry.size);
+                break;
+            case METHOD_DEFLATED:
+                inflate(entry, data, output, buffers);
+                break;
+            default:
+                throw new IOException("Unsupported compression method " + entry.method
+                        + " of " + entry.name + " in " + name);
+        }
+    }
+
+    /**
+     * @return a buffer positioned at the (compressed) data of the given entry
+     */
+    private ByteBuffer getData(Entry entry) throws IOException {
+        ByteBuffer buffer = this.buffer;
+        if (buffer == null)
+            throw new IOException("Jar file " + name + " is closed");
+
+        // In longs, as offsets and sizes close to 2 GB would overflow
+        int localHeader = entry.localHeaderOffset;
+        if (localHeader + 30L > buffer.limit() || buffer.getInt(localHeader) != LOCAL_HEADER_SIGNATURE)
+            throw new IOException("Invalid local header of " + entry.name + " in " + name);
+        long dataOffset = localHeader + 30L + (buffer.getShort(localHeader + 26) & 0xFFFF)
+                + (buffer.getShort(localHeader + 28) & 0xFFFF);
+        int dataSize = entry.method == METHOD_STORED ? entry.size : entry.compressedSize;
+        if (dataOffset + dataSize > buffer.limit())
+            throw new IOException("Entry " + entry.name + " exceeds " + name);
+
+        ByteBuffer data = buffer.duplicate();
+        ((Buffer) data).position((int) dataOffset);
+        return data;
+    }
+
+    /**
+     * Inflates the data in chunks, as {@link Inflater} only takes arrays before Java 11
+     */
+    private void inflate(Entry entry, ByteBuffer data, byte[] output, Buffers buffers) throws IOException {
+        Inflater inflater = buffers.inflater;
+        inflater.reset();
+        byte[] input = buffers.input;
+        int remaining = entry.compressedSize;
+        int length = 0;
+        try {
+            while (length < entry.size && !inflater.finished()) {
+                if (inflater.needsInput()) {
+                    if (remaining == 0) {
+                        // Raw inflaters may need an extra byte to detect the end of the data
+                        input[0] = 0;
+                        inflater.setInput(input, 0, 1);
+                        remaining = -1;
+                    } else if (remaining < 0) {
+                        break;
+                    } else {
+                        int chunk = Math.min(remaining, input.length);
+                        data.get(input, 0, chunk);
+                        inflater.setInput(input, 0, chunk);
+                        remaining -= chunk;
+                    }
+                }
+                length += inflater.inflate(output, length, entry.size - length);
+                if (inflater.needsDictionary())
+                    break;
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Invalid compressed data of " + entry.name + " in " + name, e);
+        }
+        if (length != entry.size)
+            throw new IOException("Entry " + entry.name + " in " + name + " is truncated");
+    }
+
+    /**
+     * Releases the mapping. It is only unmapped once garbage collected, as Java offers no way to unmap it directly.
+     */
+    @Override
+    public void close() {
+        buffer = null;
+    }
+
+    private static List<Entry> readCentralDirectory(ByteBuffer buffer) throws IOException {
+        int end = findEnd(buffer);
+        long entryCount = buffer.getShort(end + 10) & 0xFFFF;
+        long directoryOffset = buffer.getInt(end + 16) & 0xFFFFFFFFL;
+
+        int locator = end - ZIP64_LOCATOR_SIZE;
+        if (locator >= 0 && buffer.getInt(locator) == ZIP64_LOCATOR_SIGNATURE) {
+            long zip64End = buffer.getLong(locator + 8);
+            if (zip64End < 0 || zip64End + 56 > buffer.limit() || buffer.getInt((int) zip64End) != ZIP64_END_SIGNATURE)
+                throw new IOException("Invalid zip64 end of central directory");
+            entryCount = buffer.getLong((int) zip64End + 32);
+            directoryOffset = buffer.getLong((int) zip64End + 48);
+        }
+        if (directoryOffset < 0 || directoryOffset > buffer.limit())
+            throw new IOException("Invalid central directory offset " + directoryOffset);
+
+        List<Entry> entries = new ArrayList<>((int) Math.min(entryCount, 1 << 16));
+        int position = (int) directoryOffset;
+        for (long i = 0; i < entryCount; i++) {
+            if (position + 46 > buffer.limit() || buffer.getInt(position) != CENTRAL_HEADER_SIGNATURE)
+                throw new IOException("Invalid central directory header");
+
+            int method = buffer.getShort(position + 10) & 0xFFFF;
+            int crc = buffer.getInt(position + 16);
+            long compressedSize = buffer.getInt(position + 20) & 0xFFFFFFFFL;
+            long size = buffer.getInt(position + 24) & 0xFFFFFFFFL;
+            int nameLength = buffer.getShort(position + 28) & 0xFFFF;
+            int extraLength = buffer.getShort(position + 30) & 0xFFFF;
+            int commentLength = buffer.getShort(position + 32) & 0xFFFF;
+            long localHeaderOffset = buffer.getInt(position + 42) & 0xFFFFFFFFL;
+
+            int namePosition = position + 46;
+            if (namePosition + nameLength + extraLength > buffer.limit())
+                throw new IOException("Invalid central directory header");
+            byte[] nameBytes = new byte[nameLength];
+            ByteBuffer nameBuffer = buffer.duplicate();
+            ((Buffer) nameBuffer).position(namePosition);
+            nameBuffer.get(nameBytes);
+            String name = new String(nameBytes, StandardCharsets.UTF_8);
+
+            // Sizes and offsets that don't fit are stored in the zip64 extra field, in this order
+            int extra = namePosition + nameLength;
+            int extraEnd = extra + extraLength;
+            while (extra + 4 <= extraEnd) {
+                int id = buffer.getShort(extra) & 0xFFFF;
+                int length = buffer.getShort(extra + 2) & 0xFFFF;
+                if (id == ZIP64_EXTRA_ID) {
+                    int field = extra + 4;
+                    int fieldEnd = Math.min(field + length, extraEnd);
+                    int fieldCount = (size == 0xFFFFFFFFL ? 1 : 0) + (compressedSize == 0xFFFFFFFFL ? 1 : 0)
+                            + (localHeaderOffset == 0xFFFFFFFFL ? 1 : 0);
+                    if (field + fieldCount * 8L > fieldEnd)
+                        throw new IOException("Invalid zip64 extra field of " + name);
+                    if (size == 0xFFFFFFFFL) {
+                        size = buffer.getLong(field);
+                        field += 8;
+                    }
+                    if (compressedSize == 0xFFFFFFFFL) {
+                        compressedSize = buffer.getLong(field);
+                        field += 8;
+                    }
+                    if (localHeaderOffset == 0xFFFFFFFFL) {
+                        localHeaderOffset = buffer.getLong(field);
+                    }
+                    break;
+                }
+                extra += 4 + length;
+            }
+
+            // The zip64 values are signed longs, of which negative ones are just as invalid
+            if (size < 0 || size > Integer.MAX_VALUE - 8 || compressedSize < 0 || compressedSize > Integer.MAX_VALUE - 8
+                    || localHeaderOffset < 0 || localHeaderOffset > buffer.limit())
+                throw new IOException("Invalid size or offset of " + name);
+            entries.add(new Entry(name, method, crc, (int) compressedSize, (int) size, (int) localHeaderOffset));
+
+            position = extraEnd + commentLength;
+        }
+        return entries;
+    }
+
+    private static int findEnd(ByteBuffer buffer) throws IOException {
+        int minimum = Math.max(0, buffer.limit() - END_SIZE - MAX_COMMENT_LENGTH);
+        for (int position = buffer.limit() - END_SIZE; position >= minimum; position--) {
+            if (buffer.getInt(position) == END_SIGNATURE)
+                return position;
+        }
+        throw new IOException("Not a zip file, no end of central directory found");
+    }
+
+    @Override
+    public String toString() {
+        return "MappedJarFile{" +
+                "name='" + name + '\'' +
+                ", entries=" + entries.size() +
+                '}';
+    }
+
+    public static class Entry {
+        private final String name;
+        private final int method;
+        private final int crc;
+        private final int compressedSize;
+        private final int size;
+        private final int localHeaderOffset;
+
+        private Entry(String name, int method, int crc, int compressedSize, int size, int localHeaderOffset) {
+            this.name = name;
+            this.method = method;
+            this.crc = crc;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.localHeaderOffset = localHeaderOffset;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public boolean isDirectory() {
+            return name.endsWith("/");
+        }
+
+        /**
+         * @return the uncompressed size
+         */
+        public int getSize() {
+            return size;
+        }
+
+        /**
+         * @return the CRC-32 of the uncompressed data, as stored in the central directory
+         */
+        public int getCrc() {
+            return crc;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    /**
+     * The buffers and inflater used by a single thread to read entries, only growing.
+     * These should be {@link #close() closed} once done, releasing the native memory of the inflater.
+     */
+    public static class Buffers implements Closeable {
+        private final Inflater inflater = new Inflater(true);
+        private final CRC32 crc = new CRC32();
+        private final byte[] input = new byte[64 * 1024];
+        private byte[] output = new byte[8192];
+
+        private byte[] output(int length) {
+            if (output.length < length) {
+                output = new byte[Math.max(length, output.length * 2)];
+            }
+            return output;
+        }
+
+        @Override
+        public void close() {
+            inflater.end();
+        }
+
+        @Override
+        public String toString() {
+            return "Buffers{" +
+                    "output=" + output.length +
+                    '}';
+        }
+    }
+
+}
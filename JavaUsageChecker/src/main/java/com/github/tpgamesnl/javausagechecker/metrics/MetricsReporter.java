@@ -0,0 +1,150 @@
+package com.github.tpgamesnl.javausagechecker.metrics;
+
+import com.github.tpgamesnl.javausagechecker.JavaUsageChecker;
+import com.github.tpgamesnl.javausagechecker.query.Query;
+
+import java.io.Closeable;
+import java.io.PrintStream;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prints the progress of a scan on a fixed interval, with rates over the last interval,
+ * and a summary once {@link #close() closed}.
+ * <p>
+ * Workers only update the {@link ScanMetrics}, so printing doesn't slow them down however many classes are checked.
+ */
+public class MetricsReporter implements Closeable {
+
+    /**
+     * Starts printing the progress of the given scan every interval, on a daemon thread
+     */
+    public static MetricsReporter start(JavaUsageChecker javaUsageChecker, PrintStream out, long intervalMillis) {
+        MetricsReporter reporter = new MetricsReporter(javaUsageChecker, out);
+        reporter.executor.scheduleAtFixedRate(reporter::sample, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        return reporter;
+    }
+
+    private final JavaUsageChecker javaUsageChecker;
+    private final ScanMetrics metrics;
+    private final PrintStream out;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "Metrics-reporter");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Only accessed by the executor thread
+    private long lastNanos = System.nanoTime();
+    private long lastClassesChecked;
+    private long lastBytesRead;
+    private long lastBusyNanos;
+
+    private MetricsReporter(JavaUsageChecker javaUsageChecker, PrintStream out) {
+        this.javaUsageChecker = javaUsageChecker;
+        this.metrics = javaUsageChecker.getMetrics();
+        this.out = out;
+    }
+
+    private void sample() {
+        ScanMetrics.Phase phase = metrics.getPhase();
+        if (phase == null || phase == ScanMetrics.Phase.FINISHED)
+            return;
+
+        long nanos = System.nanoTime();
+        long classesChecked = metrics.getClassesChecked();
+        long bytesRead = metrics.getBytesRead();
+        Map<String, Long> workerBusyNanos = metrics.getWorkerBusyNanos();
+        long busyNanos = 0;
+        for (long workerNanos : workerBusyNanos.values()) {
+            busyNanos += workerNanos;
+        }
+
+        double seconds = (nanos - lastNanos) / 1e9;
+        double classesPerSecond = (classesChecked - lastClassesChecked) / seconds;
+        double bytesPerSecond = (bytesRead - lastBytesRead) / seconds;
+        double utilisation = workerBusyNanos.isEmpty() ? 0
+                : (busyNanos - lastBusyNanos) / (double) (nanos - lastNanos) / workerBusyNanos.size();
+
+        lastNanos = nanos;
+        lastClassesChecked = classesChecked;
+        lastBytesRead = bytesRead;
+        lastBusyNanos = busyNanos;
+
+        StringBuilder line = new StringBuilder();
+        line.append(String.format(Locale.ROOT, "[%.1f s] %s: ",
+                metrics.getElapsedNanos() / 1e9, phase.name().toLowerCase(Locale.ROOT).replace('_', ' ')));
+        line.append(metrics.getJarsOpened()).append('/').append(metrics.getJarsFound()).append(" jars opened, ");
+        line.append(classesChecked).append('/').append(metrics.getClassesFound())
+                .append(phase == ScanMetrics.Phase.CHECKING_CLASSES ? "" : "+").append(" classes checked");
+        line.append(String.format(Locale.ROOT, " (%.0f/s, %.1f MB/s), %d queued, %d workers %.0f%% busy",
+                classesPerSecond, bytesPerSecond / 1e6, javaUsageChecker.getQueuedTaskCount(),
+                workerBusyNanos.size(), utilisation * 100));
+
+        // Only known once all jar files have been opened
+        if (phase == ScanMetrics.Phase.CHECKING_CLASSES && classesPerSecond > 0) {
+            long remaining = metrics.getClassesFound() - classesChecked;
+            line.append(String.format(Locale.ROOT, ", ETA %.0f s", remaining / classesPerSecond));
+        }
+        out.println(line);
+    }
+
+    /**
+     * Stops printing the progress, and prints a summary of the scan instead
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        long elapsedNanos = metrics.getElapsedNanos();
+        out.println(String.format(Locale.ROOT, "Checked %d classes (%.1f MB) of %d jars in %.2f s",
+                metrics.getClassesChecked(), metrics.getBytesRead() / 1e6, metrics.getJarsOpened(), elapsedNanos / 1e9));
+
+        long classesDeduplicated = metrics.getClassesDeduplicated();
+        if (classesDeduplicated != 0) {
+            out.println("  Deduplicated classes: " + classesDeduplicated + ", checked as identical copies of classes checked before");
+        }
+
+        long entriesSkipped = metrics.getEntriesSkipped();
+        if (entriesSkipped != 0) {
+            out.println("  Skipped entries: " + entriesSkipped + ", over a limit or unreadable");
+        }
+
+        StringBuilder phases = new StringBuilder("  Phases:");
+        for (ScanMetrics.Phase phase : ScanMetrics.Phase.values()) {
+            if (phase == ScanMetrics.Phase.FINISHED)
+                continue;
+            phases.append(String.format(Locale.ROOT, " %s %.2f s,",
+                    phase.name().toLowerCase(Locale.ROOT).replace('_', ' '), metrics.getPhaseNanos(phase) / 1e9));
+        }
+        phases.setLength(phases.length() - 1);
+        out.println(phases);
+
+        long jarsScanned = metrics.getJarsScanned();
+        if (jarsScanned != 0) {
+            out.println(String.format(Locale.ROOT, "  Jar scan time: %.3f s on average, %.3f s at most",
+                    metrics.getJarScanNanos() / 1e9 / jarsScanned, metrics.getMaxJarScanNanos() / 1e9));
+        }
+
+        if (elapsedNanos != 0) {
+            StringBuilder workers = new StringBuilder("  Worker utilisation:");
+            metrics.getWorkerBusyNanos().forEach((name, busyNanos) ->
+                    workers.append(String.format(Locale.ROOT, " %s %.0f%%,", name, busyNanos * 100.0 / elapsedNanos)));
+            workers.setLength(workers.length() - 1);
+            out.println(workers);
+        }
+
+        for (Map.Entry<Query, Long> entry : metrics.getQueryMatches().entrySet()) {
+            out.println("  " + entry.getValue() + " usages found by " + entry.getKey());
+        }
+    }
+
+}
@@ -0,0 +1,146 @@
+package com.github.tpgamesnl.javausagechecker.metrics;
+
+import com.github.tpgamesnl.javausagechecker.JavaUsageChecker;
+import com.github.tpgamesnl.javausagechecker.query.Query;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Serves the metrics of a scan on {@code http://localhost:<port>/metrics}, in the Prometheus text format.
+ * <p>
+ * Only counters and gauges are served, rates like classes per second are left to the scraper.
+ * The server only listens on the loopback address.
+ */
+public class MetricsServer implements Closeable {
+
+    private static final String PREFIX = "javausagechecker_";
+
+    public static MetricsServer start(JavaUsageChecker javaUsageChecker, int port) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        MetricsServer metricsServer = new MetricsServer(javaUsageChecker, server);
+        server.createContext("/metrics", metricsServer::handle);
+        server.start();
+        return metricsServer;
+    }
+
+    private final JavaUsageChecker javaUsageChecker;
+    private final HttpServer server;
+
+    private MetricsServer(JavaUsageChecker javaUsageChecker, HttpServer server) {
+        this.javaUsageChecker = javaUsageChecker;
+        this.server = server;
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!exchange.getRequestMethod().equals("GET")) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+
+            byte[] body = format(javaUsageChecker).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * @return the metrics of the given scan in the Prometheus text format
+     */
+    public static String format(JavaUsageChecker javaUsageChecker) {
+        ScanMetrics metrics = javaUsageChecker.getMetrics();
+        StringBuilder out = new StringBuilder();
+
+        ScanMetrics.Phase currentPhase = metrics.getPhase();
+        header(out, "phase", "gauge", "Whether the scan is in the given phase");
+        for (ScanMetrics.Phase phase : ScanMetrics.Phase.values()) {
+            sample(out, "phase", "phase", phase.name().toLowerCase(Locale.ROOT), phase == currentPhase ? 1 : 0);
+        }
+        header(out, "phase_seconds", "gauge", "Time spent in the given phase so far");
+        for (ScanMetrics.Phase phase : ScanMetrics.Phase.values()) {
+            if (phase != ScanMetrics.Phase.FINISHED) {
+                sample(out, "phase_seconds", "phase", phase.name().toLowerCase(Locale.ROOT), metrics.getPhaseNanos(phase) / 1e9);
+            }
+        }
+        metric(out, "elapsed_seconds", "gauge", "Time since the scan started", metrics.getElapsedNanos() / 1e9);
+
+        metric(out, "jars_found_total", "counter", "Jar files found, including nested ones", metrics.getJarsFound());
+        metric(out, "jars_opened_total", "counter", "Jar files opened or loaded from the cache", metrics.getJarsOpened());
+        metric(out, "jars_scanned_total", "counter", "Jar files of which all classes have been checked", metrics.getJarsScanned());
+        metric(out, "jar_scan_seconds_total", "counter", "Time between opening jar files and checking their last class",
+                metrics.getJarScanNanos() / 1e9);
+        metric(out, "jar_scan_seconds_max", "gauge", "Longest time between opening a jar file and checking its last class",
+                metrics.getMaxJarScanNanos() / 1e9);
+        metric(out, "classes_found_total", "counter", "Classes found in the opened jar files", metrics.getClassesFound());
+        metric(out, "classes_checked_total", "counter", "Classes checked", metrics.getClassesChecked());
+        metric(out, "classes_deduplicated_total", "counter", "Classes checked by replaying an identical class checked before",
+                metrics.getClassesDeduplicated());
+        metric(out, "entries_skipped_total", "counter", "Jar files and classes skipped as they exceeded a limit or couldn't be read",
+                metrics.getEntriesSkipped());
+        metric(out, "bytes_read_total", "counter", "Uncompressed bytes of the class files read", metrics.getBytesRead());
+        metric(out, "queued_tasks", "gauge", "Tasks waiting to be run", javaUsageChecker.getQueuedTaskCount());
+
+        header(out, "worker_busy_seconds_total", "counter", "Time spent by the given worker on tasks");
+        for (Map.Entry<String, Long> entry : metrics.getWorkerBusyNanos().entrySet()) {
+            sample(out, "worker_busy_seconds_total", "worker", entry.getKey(), entry.getValue() / 1e9);
+        }
+        header(out, "query_matches_total", "counter", "Usages found by the given query");
+        for (Map.Entry<Query, Long> entry : metrics.getQueryMatches().entrySet()) {
+            sample(out, "query_matches_total", "query", entry.getKey().toString(), entry.getValue());
+        }
+        return out.toString();
+    }
+
+    private static void metric(StringBuilder out, String name, String type, String help, double value) {
+        header(out, name, type, help);
+        out.append(PREFIX).append(name).append(' ').append(formatValue(value)).append('\n');
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(PREFIX).append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(PREFIX).append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, String label, String labelValue, double value) {
+        out.append(PREFIX).append(name).append('{').append(label).append("=\"");
+        for (int i = 0; i < labelValue.length(); i++) {
+            char c = labelValue.charAt(i);
+            if (c == '\\' || c == '"') {
+                out.append('\\').append(c);
+            } else if (c == '\n') {
+                out.append("\\n");
+            } else {
+                out.append(c);
+            }
+        }
+        out.append("\"} ").append(formatValue(value)).append('\n');
+    }
+
+    private static String formatValue(double value) {
+        return value == (long) value ? Long.toString((long) value) : Double.toString(value);
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+}
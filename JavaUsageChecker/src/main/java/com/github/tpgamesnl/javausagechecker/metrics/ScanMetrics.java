@@ -0,0 +1,249 @@
+package com.github.tpgamesnl.javausagechecker.metrics;
+
+import com.github.tpgamesnl.javausagechecker.query.Query;
+import com.github.tpgamesnl.javausagechecker.worker.PerThread;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The metrics of a single scan, recorded by the workers.
+ * <p>
+ * All counters are {@link LongAdder}s, so workers updating them don't contend with each other.
+ * Rates and estimates are derived from these by sampling, see {@link MetricsReporter} and {@link MetricsServer},
+ * rather than by the workers themselves.
+ */
+public class ScanMetrics {
+
+    /**
+     * The phases of a scan, in order. Directories are walked while opening the jar files found so far,
+     * and jar files are still being opened while checking the first classes:
+     * the {@link #CHECKING_CLASSES} phase starts once all jar files have been opened.
+     */
+    public enum Phase {
+        OPENING_JARS,
+        CHECKING_CLASSES,
+        FINISHED
+    }
+
+    private final LongAdder jarsFound = new LongAdder();
+    private final LongAdder jarsOpened = new LongAdder();
+    private final LongAdder jarsScanned = new LongAdder();
+    private final LongAdder jarScanNanos = new LongAdder();
+    private final LongAccumulator maxJarScanNanos = new LongAccumulator(Math::max, 0);
+    private final LongAdder classesFound = new LongAdder();
+    private final LongAdder classesChecked = new LongAdder();
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder classesDeduplicated = new LongAdder();
+    private final LongAdder entriesSkipped = new LongAdder();
+
+    private final List<Query> queries;
+    /**
+     * The counters of the queries, never modified after construction
+     */
+    private final Map<Query, LongAdder> queryMatches = new IdentityHashMap<>();
+    private final Map<String, LongAdder> workerBusyNanos = new ConcurrentHashMap<>();
+    private final PerThread<LongAdder> currentWorkerBusyNanos = PerThread.of(() ->
+            workerBusyNanos.computeIfAbsent(Thread.currentThread().getName(), name -> new LongAdder()));
+
+    /**
+     * The {@link System#nanoTime()} each phase started at, or {@code 0} if it hasn't started yet
+     */
+    private final AtomicLongArray phaseStarts = new AtomicLongArray(Phase.values().length);
+
+    public ScanMetrics(List<Query> queries) {
+        this.queries = queries;
+        for (Query query : queries) {
+            queryMatches.put(query, new LongAdder());
+        }
+    }
+
+    public void phaseStarted(Phase phase) {
+        phaseStarts.compareAndSet(phase.ordinal(), 0, Math.max(1, System.nanoTime()));
+    }
+
+    /**
+     * @return the phase the scan is in, or {@code null} if it hasn't been started
+     */
+    @Nullable
+    public Phase getPhase() {
+        Phase[] phases = Phase.values();
+        for (int i = phases.length - 1; i >= 0; i--) {
+            if (phaseStarts.get(i) != 0)
+                return phases[i];
+        }
+        return null;
+    }
+
+    /**
+     * @return the time spent in the given phase so far, or {@code 0} if it hasn't started yet
+     */
+    public long getPhaseNanos(Phase phase) {
+        long start = phaseStarts.get(phase.ordinal());
+        if (start == 0 || phase == Phase.FINISHED)
+            return 0;
+        long end = phaseStarts.get(phase.ordinal() + 1);
+        return (end == 0 ? System.nanoTime() : end) - start;
+    }
+
+    /**
+     * @return the time since the scan started, up to when it finished
+     */
+    public long getElapsedNanos() {
+        long start = phaseStarts.get(0);
+        if (start == 0)
+            return 0;
+        long end = phaseStarts.get(Phase.FINISHED.ordinal());
+        return (end == 0 ? System.nanoTime() : end) - start;
+    }
+
+    public void addJarsFound(int amount) {
+        jarsFound.add(amount);
+    }
+
+    public void jarOpened() {
+        jarsOpened.increment();
+    }
+
+    /**
+     * Called once all classes of a jar file have been checked
+     *
+     * @param nanos the time between opening the jar file and checking its last class
+     */
+    public void jarScanned(long nanos) {
+        jarsScanned.increment();
+        jarScanNanos.add(nanos);
+        maxJarScanNanos.accumulate(nanos);
+    }
+
+    public void addClassesFound(int amount) {
+        classesFound.add(amount);
+    }
+
+    /**
+     * @param bytes the size of the class file read, or {@code 0} if it was loaded from the cache
+     */
+    public void classChecked(int bytes) {
+        classesChecked.increment();
+        bytesRead.add(bytes);
+    }
+
+    public void addClassesChecked(int amount) {
+        classesChecked.add(amount);
+    }
+
+    /**
+     * Called for every class checked by replaying the matches of an identical class checked before,
+     * without parsing it, in addition to {@link #classChecked(int)}
+     */
+    public void classDeduplicated() {
+        classesDeduplicated.increment();
+    }
+
+    /**
+     * Called for every jar file or class skipped, as it exceeded a limit or couldn't be read
+     */
+    public void entrySkipped() {
+        entriesSkipped.increment();
+    }
+
+    /**
+     * Adds time the current thread spent working on tasks, rather than waiting for them
+     */
+    public void addWorkerBusyNanos(long nanos) {
+        currentWorkerBusyNanos.get().add(nanos);
+    }
+
+    /**
+     * Counts a match of the given query, ignoring queries this scan wasn't created with
+     */
+    public void queryMatched(Query query) {
+        LongAdder matches = queryMatches.get(query);
+        if (matches != null)
+            matches.increment();
+    }
+
+    public long getJarsFound() {
+        return jarsFound.sum();
+    }
+
+    public long getJarsOpened() {
+        return jarsOpened.sum();
+    }
+
+    public long getJarsScanned() {
+        return jarsScanned.sum();
+    }
+
+    public long getJarScanNanos() {
+        return jarScanNanos.sum();
+    }
+
+    public long getMaxJarScanNanos() {
+        return maxJarScanNanos.get();
+    }
+
+    public long getClassesFound() {
+        return classesFound.sum();
+    }
+
+    public long getClassesChecked() {
+        return classesChecked.sum();
+    }
+
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    public long getClassesDeduplicated() {
+        return classesDeduplicated.sum();
+    }
+
+    public long getEntriesSkipped() {
+        return entriesSkipped.sum();
+    }
+
+    /**
+     * @return the busy time per worker thread name, sorted by name
+     */
+    public Map<String, Long> getWorkerBusyNanos() {
+        Map<String, Long> busyNanos = new TreeMap<>();
+        workerBusyNanos.forEach((name, nanos) -> busyNanos.put(name, nanos.sum()));
+        return busyNanos;
+    }
+
+    /**
+     * @return the amount of matches per query, in the order of the queries
+     */
+    public Map<Query, Long> getQueryMatches() {
+        Map<Query, Long> matches = new LinkedHashMap<>();
+        for (Query query : queries) {
+            matches.put(query, queryMatches.get(query).sum());
+        }
+        return matches;
+    }
+
+    @Override
+    public String toString() {
+        return "ScanMetrics{" +
+                "phase=" + getPhase() +
+                ", jarsFound=" + jarsFound +
+                ", jarsOpened=" + jarsOpened +
+                ", jarsScanned=" + jarsScanned +
+                ", classesFound=" + classesFound +
+                ", classesChecked=" + classesChecked +
+                ", bytesRead=" + bytesRead +
+                ", classesDeduplicated=" + classesDeduplicated +
+                ", entriesSkipped=" + entriesSkipped +
+                '}';
+    }
+
+}
@@ -0,0 +1,187 @@
+package com.github.tpgamesnl.javausagechecker.query;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+
+/**
+ * An Aho-Corasick automaton, finding which of a set of needles occur in a string in a single pass over that string.
+ * <p>
+ * The automaton is compiled into a deterministic transition table,
+ * so searching takes one table lookup per character, regardless of the amount of needles.
+ */
+public class AhoCorasick {
+
+    private static final int[] NO_OUTPUT = new int[0];
+
+    /**
+     * Maps characters to their column in {@link #transitions}, column 0 being characters not in any needle
+     */
+    private final int[] symbols;
+    private final int width;
+    private final int[] transitions;
+    /**
+     * The needles ending at each state, including those ending at its failure states
+     */
+    private final int[][] outputs;
+
+    /**
+     * @param needles the non-empty needles, identified by their index in this list
+     */
+    public AhoCorasick(List<String> needles) {
+        int maxChar = 0;
+        for (String needle : needles) {
+            if (needle.isEmpty())
+                throw new IllegalArgumentException("Empty needle");
+            for (int i = 0; i < needle.length(); i++) {
+                maxChar = Math.max(maxChar, needle.charAt(i));
+            }
+        }
+
+        symbols = new int[maxChar + 1];
+        int symbolCount = 1;
+        int stateCount = 1;
+        for (String needle : needles) {
+            for (int i = 0; i < needle.length(); i++) {
+                char c = needle.charAt(i);
+                if (symbols[c] == 0) {
+                    symbols[c] = symbolCount++;
+                }
+            }
+            stateCount += needle.length();
+        }
+        width = symbolCount;
+
+        // Build the trie, with -1 marking missing edges
+        int[] trie = new int[stateCount * width];
+        Arrays.fill(trie, -1);
+        int[][] outputs = new int[stateCount][];
+        int states = 1;
+        for (int id = 0; id < needles.size(); id++) {
+            String needle = needles.get(id);
+            int state = 0;
+            for (int i = 0; i < needle.length(); i++) {
+                int index = state * width + symbols[needle.charAt(i)];
+                if (trie[index] == -1) {
+                    trie[index] = states++;
+                }
+                state = trie[index];
+            }
+            outputs[state] = append(outputs[state], id);
+        }
+
+        // Turn the trie into a DFA by following failure links in breadth-first order
+        int[] transitions = new int[states * width];
+        int[] failure = new int[states];
+        Queue<Integer> queue = new ArrayDeque<>();
+        for (int symbol = 0; symbol < width; symbol++) {
+            int child = trie[symbol];
+            if (child == -1) {
+                transitions[symbol] = 0;
+            } else {
+                transitions[symbol] = child;
+                failure[child] = 0;
+                queue.add(child);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            int[] failureOutput = outputs[failure[state]];
+            if (failureOutput != null) {
+                for (int id : failureOutput) {
+                    outputs[state] = append(outputs[state], id);
+                }
+            }
+
+            for (int symbol = 0; symbol < width; symbol++) {
+                int child = trie[state * width + symbol];
+                int fallback = transitions[failure[state] * width + symbol];
+                if (child == -1) {
+                    transitions[state * width + symbol] = fallback;
+                } else {
+                    transitions[state * width + symbol] = child;
+                    failure[child] = fallback;
+                    queue.add(child);
+                }
+            }
+        }
+
+        for (int state = 0; state < states; state++) {
+            if (outputs[state] == null) {
+                outputs[state] = NO_OUTPUT;
+            }
+        }
+        this.transitions = transitions;
+        this.outputs = Arrays.copyOf(outputs, states);
+    }
+
+    private static int[] append(@Nullable int[] array, int value) {
+        if (array == null)
+            return new int[] {value};
+        int[] newArray = Arrays.copyOf(array, array.length + 1);
+        newArray[array.length] = value;
+        return newArray;
+    }
+
+    private int symbol(int c) {
+        return c < symbols.length ? symbols[c] : 0;
+    }
+
+    /**
+     * Finds the needles occurring in the given string.
+     * Only allocates if any needle is found.
+     *
+     * @return the distinct ids of the needles found, or {@code null} if none were found
+     */
+    @Nullable
+    public int[] search(CharSequence s) {
+        int[] found = null;
+        int foundCount = 0;
+
+        int state = 0;
+        for (int i = 0; i < s.length(); i++) {
+            state = transitions[state * width + symbol(s.charAt(i))];
+            int[] output = outputs[state];
+            if (output.length != 0) {
+                if (found == null) {
+                    found = new int[output.length];
+                }
+                for (int id : output) {
+                    if (!contains(found, foundCount, id)) {
+                        if (foundCount == found.length) {
+                            found = Arrays.copyOf(found, found.length * 2);
+                        }
+                        found[foundCount++] = id;
+                    }
+                }
+            }
+        }
+
+        return found == null ? null : Arrays.copyOf(found, foundCount);
+    }
+
+    /**
+     * Checks whether any needle occurs in the given bytes, each byte being treated as the character {@code b & 0xFF}.
+     */
+    public boolean containsAny(byte[] bytes, int offset, int length) {
+        int state = 0;
+        for (int i = offset; i < offset + length; i++) {
+            state = transitions[state * width + symbol(bytes[i] & 0xFF)];
+            if (outputs[state].length != 0)
+                return true;
+        }
+        return false;
+    }
+
+    private static boolean contains(int[] array, int length, int value) {
+        for (int i = 0; i < length; i++) {
+            if (array[i] == value)
+                return true;
+        }
+        return false;
+    }
+
+}
@@ -3,9 +3,22 @@
 public class ClassQuery implements Query {
 
     private final StringCheck nameCheck;
+    private final StringCheck internalNameCheck;
 
     public ClassQuery(StringCheck nameCheck) {
         this.nameCheck = nameCheck;
+        this.internalNameCheck = nameCheck.toInternalForm();
+    }
+
+    public StringCheck getNameCheck() {
+        return nameCheck;
+    }
+
+    /**
+     * @return the name check in internal form, which class names are matched against
+     */
+    public StringCheck getInternalNameCheck() {
+        return internalNameCheck;
     }
 
     @Override
@@ -20,7 +33,7 @@ public boolean checkFieldAccess(int opcode, String owner, String name, String de
 
     @Override
     public boolean checkClassUsage(String name) {
-        return nameCheck.match(name);
+        return internalNameCheck.match(name);
     }
 
     @Override
@@ -0,0 +1,171 @@
+package com.github.tpgamesnl.javausagechecker.query;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A quick check on the constant pool of a class file, telling whether any query could match the class,
+ * before visiting it fully.
+ * <p>
+ * Every name and descriptor a query can match is stored as a {@code CONSTANT_Utf8} entry,
+ * so the most selective string of every query is looked for in those entries (in internal name form).
+ * The check is conservative: it may let through classes that don't match, but never skips classes that do.
+ */
+public class ConstantPoolFilter {
+
+    private static final String[] PRIMITIVE_NAMES = {
+            "void", "boolean", "byte", "char", "short", "int", "long", "float", "double"
+    };
+
+    /**
+     * @return the filter for the given queries,
+     * or {@code null} if at least one query can't be filtered on, so all classes need to be visited
+     */
+    @Nullable
+    public static ConstantPoolFilter create(List<Query> queries) {
+        List<String> needles = new ArrayList<>();
+        for (Query query : queries) {
+            String needle;
+            if (query instanceof MethodQuery) {
+                MethodQuery methodQuery = (MethodQuery) query;
+                needle = getMemberNeedle(methodQuery.getInternalOwner(), methodQuery.getName(), methodQuery.getDescriptor());
+            } else if (query instanceof FieldQuery) {
+                FieldQuery fieldQuery = (FieldQuery) query;
+                needle = getMemberNeedle(fieldQuery.getInternalOwner(), fieldQuery.getName(), fieldQuery.getDescriptor());
+            } else if (query instanceof ClassQuery) {
+                needle = getClassNeedle(((ClassQuery) query).getInternalNameCheck());
+            } else {
+                needle = null;
+            }
+
+            if (needle == null)
+                return null;
+            needles.add(toModifiedUtf8(needle));
+        }
+        return new ConstantPoolFilter(needles);
+    }
+
+    @Nullable
+    private static String getMemberNeedle(StringCheck owner, StringCheck name, StringCheck descriptor) {
+        // Members of array classes have an owner like '[Ljava/lang/Object;', which still contains the element type
+        // Only literal queries are contained in the entries, others can't be looked for
+        return longest(longest(owner.getLiteralQuery(), name.getLiteralQuery()), descriptor.getLiteralQuery());
+    }
+
+    @Nullable
+    private static String getClassNeedle(StringCheck nameCheck) {
+        String name = nameCheck.getLiteralQuery();
+        if (name == null || name.indexOf('[') != -1 || name.indexOf(']') != -1)
+            return null;
+        // Primitive types are used by their descriptor, which doesn't contain their name
+        for (String primitiveName : PRIMITIVE_NAMES) {
+            if (primitiveName.contains(name))
+                return null;
+        }
+        return name;
+    }
+
+    @Nullable
+    private static String longest(@Nullable String first, @Nullable String second) {
+        if (first == null || first.isEmpty())
+            return second == null || second.isEmpty() ? null : second;
+        if (second == null || second.length() <= first.length())
+            return first;
+        return second;
+    }
+
+    /**
+     * Encodes the given string like class files do, with every byte stored as a character
+     */
+    private static String toModifiedUtf8(String s) {
+        StringBuilder stringBuilder = new StringBuilder();
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c >= 0x01 && c <= 0x7F) {
+                stringBuilder.append(c);
+            } else if (c <= 0x7FF) {
+                stringBuilder.append((char) (0xC0 | (c >> 6)));
+                stringBuilder.append((char) (0x80 | (c & 0x3F)));
+            } else {
+                stringBuilder.append((char) (0xE0 | (c >> 12)));
+                stringBuilder.append((char) (0x80 | ((c >> 6) & 0x3F)));
+                stringBuilder.append((char) (0x80 | (c & 0x3F)));
+            }
+        }
+        return stringBuilder.toString();
+    }
+
+    @Nullable
+    private final AhoCorasick automaton;
+
+    private ConstantPoolFilter(List<String> needles) {
+        this.automaton = needles.isEmpty() ? null : new AhoCorasick(needles);
+    }
+
+    /**
+     * @return whether any query could match the given class file
+     */
+    public boolean mayMatch(byte[] classFile, int offset, int length) {
+        if (automaton == null)
+            return false;
+
+        try {
+            int end = offset + length;
+            int constantPoolCount = readUnsignedShort(classFile, offset + 8);
+            int index = offset + 10;
+            for (int i = 1; i < constantPoolCount; i++) {
+                int tag = classFile[index++];
+                switch (tag) {
+                    case 1: // Utf8
+                        int utf8Length = readUnsignedShort(classFile, index);
+                        index += 2;
+                        if (index + utf8Length > end)
+                            return true;
+                        if (automaton.containsAny(classFile, index, utf8Length))
+                            return true;
+                        index += utf8Length;
+                        break;
+                    case 7: // Class
+                    case 8: // String
+                    case 16: // MethodType
+                    case 19: // Module
+                    case 20: // Package
+                        index += 2;
+                        break;
+                    case 15: // MethodHandle
+                        index += 3;
+                        break;
+                    case 3: // Integer
+                    case 4: // Float
+                    case 9: // Fieldref
+                    case 10: // Methodref
+                    case 11: // InterfaceMethodref
+                    case 12: // NameAndType
+                    case 17: // Dynamic
+                    case 18: // InvokeDynamic
+                        index += 4;
+                        break;
+                    case 5: // Long
+                    case 6: // Double
+                        index += 8;
+                        i++;
+                        break;
+                    default:
+                        // Unknown constant, so can't tell
+                        return true;
+                }
+            }
+            return false;
+        } catch (ArrayIndexOutOfBoundsException e) {
+            // Malformed class file, leave it to the full visit
+            return true;
+        }
+    }
+
+    private static int readUnsignedShort(byte[] bytes, int index) {
+        return ((bytes[index] & 0xFF) << 8) | (bytes[index + 1] & 0xFF);
+    }
+
+}
@@ -0,0 +1,104 @@
+package com.github.tpgamesnl.javausagechecker.query;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The matches of the symbols checked most recently by a single thread, evicting the least recently used ones.
+ * <p>
+ * Classes reference the same members and classes over and over, so most symbols are found here
+ * with a single hash lookup, instead of being checked against the queries again.
+ * Looking up doesn't allocate, only caching new matches does.
+ */
+class MatchCache {
+
+    static final int METHOD_ACCESS = 0;
+    static final int FIELD_ACCESS = 1;
+    static final int CLASS_USAGE = 2;
+
+    private final Map<Key, List<Query>> entries;
+    /**
+     * Reused for every lookup
+     */
+    private final Key probe = new Key();
+
+    MatchCache(int capacity) {
+        this.entries = new LinkedHashMap<Key, List<Query>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, List<Query>> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * @return the cached matches of the given symbol, or {@code null} if they aren't cached
+     */
+    @Nullable
+    List<Query> get(int symbolKind, int opcode, String owner, @Nullable String name, @Nullable String descriptor, boolean isInterface) {
+        probe.set(symbolKind, opcode, owner, name, descriptor, isInterface);
+        return entries.get(probe);
+    }
+
+    /**
+     * Caches the matches of the given symbol
+     *
+     * @return the cached matches, which can't be modified
+     */
+    List<Query> put(int symbolKind, int opcode, String owner, @Nullable String name, @Nullable String descriptor, boolean isInterface,
+                    List<Query> matches) {
+        if (!matches.isEmpty())
+            matches = Collections.unmodifiableList(matches);
+        Key key = new Key();
+        key.set(symbolKind, opcode, owner, name, descriptor, isInterface);
+        entries.put(key, matches);
+        return matches;
+    }
+
+    private static class Key {
+        private int symbolKind;
+        private int opcode;
+        private String owner;
+        @Nullable
+        private String name;
+        @Nullable
+        private String descriptor;
+        private boolean isInterface;
+        private int hash;
+
+        private void set(int symbolKind, int opcode, String owner, @Nullable String name, @Nullable String descriptor, boolean isInterface) {
+            this.symbolKind = symbolKind;
+            this.opcode = opcode;
+            this.owner = owner;
+            this.name = name;
+            this.descriptor = descriptor;
+            this.isInterface = isInterface;
+
+            int hash = 31 * symbolKind + opcode;
+            hash = 31 * hash + owner.hashCode();
+            hash = 31 * hash + (name == null ? 0 : name.hashCode());
+            hash = 31 * hash + (descriptor == null ? 0 : descriptor.hashCode());
+            this.hash = 31 * hash + (isInterface ? 1 : 0);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return hash == key.hash && symbolKind == key.symbolKind && opcode == key.opcode && isInterface == key.isInterface
+                    && owner.equals(key.owner) && Objects.equals(name, key.name) && Objects.equals(descriptor, key.descriptor);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+}
@@ -3,18 +3,39 @@
 public class MethodQuery implements Query {
 
     private final StringCheck owner;
+    private final StringCheck internalOwner;
     private final StringCheck name;
     private final StringCheck descriptor;
 
     public MethodQuery(StringCheck owner, StringCheck name, StringCheck descriptor) {
         this.owner = owner;
+        this.internalOwner = owner.toInternalForm();
         this.name = name;
         this.descriptor = descriptor;
     }
 
+    public StringCheck getOwner() {
+        return owner;
+    }
+
+    /**
+     * @return the owner check in internal form, which owners are matched against
+     */
+    public StringCheck getInternalOwner() {
+        return internalOwner;
+    }
+
+    public StringCheck getName() {
+        return name;
+    }
+
+    public StringCheck getDescriptor() {
+        return descriptor;
+    }
+
     @Override
     public boolean checkMethodAccess(int opcode, String owner, String name, String descriptor, boolean isInterface) {
-        return this.owner.match(owner) && this.name.match(name) && this.descriptor.match(descriptor);
+        return this.internalOwner.match(owner) && this.name.match(name) && this.descriptor.match(descriptor);
     }
 
     @Override
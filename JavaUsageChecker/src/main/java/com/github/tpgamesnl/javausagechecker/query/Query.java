@@ -1,5 +1,11 @@
 package com.github.tpgamesnl.javausagechecker.query;
 
+/**
+ * A query for usages of methods, fields or classes.
+ * <p>
+ * Owners and class names are passed in internal form, like {@code java/lang/String}.
+ * Other types are passed by their source name in that form, like {@code int} or {@code java/lang/String[]}.
+ */
 public interface Query {
 
     boolean checkMethodAccess(int opcode, String owner, String name, String descriptor, boolean isInterface);
@@ -8,6 +14,4 @@ public interface Query {
 
     boolean checkClassUsage(String name);
 
-
-
 }
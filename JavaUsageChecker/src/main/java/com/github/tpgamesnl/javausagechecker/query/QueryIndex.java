@@ -0,0 +1,276 @@
+package com.github.tpgamesnl.javausagechecker.query;
+
+import com.github.tpgamesnl.javausagechecker.worker.PerThread;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compiled form of a list of {@link Query queries}, finding the queries matching an access
+ * without checking every query.
+ * <p>
+ * Queries are split by kind, and every query is indexed by one of its {@link StringCheck}s:
+ * exact checks are put into hash maps, (word) containment checks into an {@link AhoCorasick} automaton.
+ * Only the queries found this way are checked fully. Queries without such a check,
+ * or queries of unknown implementations, are checked for every access.
+ * <p>
+ * The matches of the symbols checked most recently are kept in a {@link MatchCache} per thread,
+ * as the same symbols are used over and over.
+ */
+public class QueryIndex {
+
+    /**
+     * The default maximum amount of symbols of which the matches are cached per thread
+     */
+    public static final int DEFAULT_MATCH_CACHE_SIZE = 4096;
+
+    private final List<Query> queries;
+    @Nullable
+    private final PerThread<MatchCache> matchCache;
+
+    private final KindIndex methodIndex = new KindIndex(3);
+    private final KindIndex fieldIndex = new KindIndex(3);
+    private final KindIndex classIndex = new KindIndex(1);
+
+    public QueryIndex(List<Query> queries) {
+        this(queries, DEFAULT_MATCH_CACHE_SIZE);
+    }
+
+    /**
+     * @param matchCacheSize the maximum amount of symbols of which the matches are cached per thread,
+     *                       {@code 0} to check every symbol against the queries
+     */
+    public QueryIndex(List<Query> queries, int matchCacheSize) {
+        this.queries = queries;
+        this.matchCache = matchCacheSize == 0 ? null : PerThread.cache(() -> new MatchCache(matchCacheSize));
+
+        for (Query query : queries) {
+            if (query instanceof MethodQuery) {
+                MethodQuery methodQuery = (MethodQuery) query;
+                methodIndex.add(query, methodQuery.getInternalOwner(), methodQuery.getName(), methodQuery.getDescriptor());
+            } else if (query instanceof FieldQuery) {
+                FieldQuery fieldQuery = (FieldQuery) query;
+                fieldIndex.add(query, fieldQuery.getInternalOwner(), fieldQuery.getName(), fieldQuery.getDescriptor());
+            } else if (query instanceof ClassQuery) {
+                classIndex.add(query, ((ClassQuery) query).getInternalNameCheck());
+            } else {
+                methodIndex.unindexed.add(query);
+                fieldIndex.unindexed.add(query);
+                classIndex.unindexed.add(query);
+            }
+        }
+
+        methodIndex.build();
+        fieldIndex.build();
+        classIndex.build();
+    }
+
+    public List<Query> getQueries() {
+        return queries;
+    }
+
+    /**
+     * @return the queries matching the given method access, an empty list if none match, which can't be modified
+     * @see Query#checkMethodAccess(int, String, String, String, boolean)
+     */
+    public List<Query> matchMethodAccess(int opcode, String owner, String name, String descriptor, boolean isInterface) {
+        if (matchCache == null)
+            return findMethodAccess(opcode, owner, name, descriptor, isInterface);
+
+        MatchCache cache = matchCache.get();
+        List<Query> matches = cache.get(MatchCache.METHOD_ACCESS, opcode, owner, name, descriptor, isInterface);
+        if (matches != null)
+            return matches;
+        return cache.put(MatchCache.METHOD_ACCESS, opcode, owner, name, descriptor, isInterface,
+                findMethodAccess(opcode, owner, name, descriptor, isInterface));
+    }
+
+    private List<Query> findMethodAccess(int opcode, String owner, String name, String descriptor, boolean isInterface) {
+        List<Query> candidates = methodIndex.candidates(owner, name, descriptor);
+        List<Query> matches = null;
+        for (int i = 0; i < candidates.size(); i++) {
+            Query query = candidates.get(i);
+            if (query.checkMethodAccess(opcode, owner, name, descriptor, isInterface)) {
+                matches = add(matches, query);
+            }
+        }
+        return matches == null ? Collections.emptyList() : matches;
+    }
+
+    /**
+     * @return the queries matching the given field access, an empty list if none match, which can't be modified
+     * @see Query#checkFieldAccess(int, String, String, String)
+     */
+    public List<Query> matchFieldAccess(int opcode, String owner, String name, String descriptor) {
+        if (matchCache == null)
+            return findFieldAccess(opcode, owner, name, descriptor);
+
+        MatchCache cache = matchCache.get();
+        List<Query> matches = cache.get(MatchCache.FIELD_ACCESS, opcode, owner, name, descriptor, false);
+        if (matches != null)
+            return matches;
+        return cache.put(MatchCache.FIELD_ACCESS, opcode, owner, name, descriptor, false,
+                findFieldAccess(opcode, owner, name, descriptor));
+    }
+
+    private List<Query> findFieldAccess(int opcode, String owner, String name, String descriptor) {
+        List<Query> candidates = fieldIndex.candidates(owner, name, descriptor);
+        List<Query> matches = null;
+        for (int i = 0; i < candidates.size(); i++) {
+            Query query = candidates.get(i);
+            if (query.checkFieldAccess(opcode, owner, name, descriptor)) {
+                matches = add(matches, query);
+            }
+        }
+        return matches == null ? Collections.emptyList() : matches;
+    }
+
+    /**
+     * @return the queries matching the given class usage, an empty list if none match, which can't be modified
+     * @see Query#checkClassUsage(String)
+     */
+    public List<Query> matchClassUsage(String name) {
+        if (matchCache == null)
+            return findClassUsage(name);
+
+        MatchCache cache = matchCache.get();
+        List<Query> matches = cache.get(MatchCache.CLASS_USAGE, 0, name, null, null, false);
+        if (matches != null)
+            return matches;
+        return cache.put(MatchCache.CLASS_USAGE, 0, name, null, null, false, findClassUsage(name));
+    }
+
+    private List<Query> findClassUsage(String name) {
+        List<Query> candidates = classIndex.candidates(name, null, null);
+        List<Query> matches = null;
+        for (int i = 0; i < candidates.size(); i++) {
+            Query query = candidates.get(i);
+            if (query.checkClassUsage(name)) {
+                matches = add(matches, query);
+            }
+        }
+        return matches == null ? Collections.emptyList() : matches;
+    }
+
+    private static List<Query> add(@Nullable List<Query> list, Query query) {
+        if (list == null)
+            list = new ArrayList<>(2);
+        list.add(query);
+        return list;
+    }
+
+    /**
+     * The index of the queries of a single kind, over one or more strings (such as the owner, name and descriptor)
+     */
+    private static class KindIndex {
+
+        private final CheckIndex[] checkIndices;
+        private final List<Query> unindexed = new ArrayList<>();
+
+        private KindIndex(int stringCount) {
+            checkIndices = new CheckIndex[stringCount];
+            for (int i = 0; i < stringCount; i++) {
+                checkIndices[i] = new CheckIndex();
+            }
+        }
+
+        /**
+         * @param checks the checks of the query, in the order of the strings of this index
+         */
+        private void add(Query query, StringCheck... checks) {
+            // Exact checks narrow down the candidates most, so prefer those
+            for (int i = 0; i < checks.length; i++) {
+                if (checks[i].getQuery() != null && checks[i].getMethod() == StringCheck.Method.EXACT) {
+                    checkIndices[i].exact.computeIfAbsent(checks[i].getQuery(), k -> new ArrayList<>()).add(query);
+                    return;
+                }
+            }
+            for (int i = 0; i < checks.length; i++) {
+                String needle = checks[i].getLiteralQuery();
+                if (needle != null && !needle.isEmpty()) {
+                    checkIndices[i].addNeedle(needle, query);
+                    return;
+                }
+            }
+            unindexed.add(query);
+        }
+
+        private void build() {
+            for (CheckIndex checkIndex : checkIndices) {
+                checkIndex.build();
+            }
+        }
+
+        /**
+         * @return the queries that may match the given strings, without duplicates
+         */
+        private List<Query> candidates(String first, @Nullable String second, @Nullable String third) {
+            List<Query> candidates = unindexed;
+            boolean copied = false;
+            for (int i = 0; i < checkIndices.length; i++) {
+                String s = i == 0 ? first : i == 1 ? second : third;
+                CheckIndex checkIndex = checkIndices[i];
+
+                List<Query> exactCandidates = checkIndex.exact.isEmpty() ? null : checkIndex.exact.get(s);
+                if (exactCandidates != null) {
+                    if (candidates.isEmpty()) {
+                        candidates = exactCandidates;
+                    } else {
+                        if (!copied) {
+                            candidates = new ArrayList<>(candidates);
+                            copied = true;
+                        }
+                        candidates.addAll(exactCandidates);
+                    }
+                }
+
+                if (checkIndex.automaton != null) {
+                    int[] found = checkIndex.automaton.search(s);
+                    if (found != null) {
+                        if (!copied) {
+                            candidates = new ArrayList<>(candidates);
+                            copied = true;
+                        }
+                        for (int id : found) {
+                            candidates.addAll(checkIndex.needleQueries.get(id));
+                        }
+                    }
+                }
+            }
+            return candidates;
+        }
+
+    }
+
+    private static class CheckIndex {
+
+        private final Map<String, List<Query>> exact = new HashMap<>();
+
+        private final Map<String, Integer> needleIds = new HashMap<>();
+        private final List<String> needles = new ArrayList<>();
+        private final List<List<Query>> needleQueries = new ArrayList<>();
+        @Nullable
+        private AhoCorasick automaton;
+
+        private void addNeedle(String needle, Query query) {
+            int id = needleIds.computeIfAbsent(needle, k -> {
+                needles.add(needle);
+                needleQueries.add(new ArrayList<>());
+                return needles.size() - 1;
+            });
+            needleQueries.get(id).add(query);
+        }
+
+        private void build() {
+            if (!needles.isEmpty()) {
+                automaton = new AhoCorasick(needles);
+            }
+        }
+
+    }
+
+}
@@ -1,13 +1,21 @@
 package com.github.tpgamesnl.javausagechecker.query;
 
+import com.github.tpgamesnl.javausagechecker.worker.PerThread;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.Locale;
+import java.util.Arrays;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * Utility method for performing {@link Method a certain} string check against a known string.
- *
- * All checks are case-insensitive.
+ * <p>
+ * Checks are case-sensitive, except for {@link Method#CONTAINS_IGNORE_CASE}.
+ * Every check is compiled into a matcher once, so matching doesn't create or convert anything per string.
+ * <p>
+ * Class names are matched in their internal form ({@code java/lang/String}),
+ * checks written against dotted names are converted to that form {@link #toInternalForm() once}.
  */
 public class StringCheck {
 
@@ -22,8 +30,8 @@ public enum Method {
          */
         EXACT {
             @Override
-            boolean match(String query, String s) {
-                return query.equals(s);
+            Predicate<String> compile(String query, char separator) {
+                return query::equals;
             }
         },
         /**
@@ -33,29 +41,77 @@ boolean match(String query, String s) {
          */
         CONTAINS {
             @Override
-            boolean match(String query, String s) {
-                return s.contains(query);
+            Predicate<String> compile(String query, char separator) {
+                return s -> s.contains(query);
             }
         },
         /**
          * A partial match, where the query must be surrounded by dots ({@code .}) or by string boundaries.
+         * In internal form, the query must be surrounded by slashes ({@code /}) instead.
          */
         CONTAINS_WORD {
             @Override
-            boolean match(String query, String s) {
-                int i = -1;
-                while ((i = s.indexOf(query, i + 1)) != -1) {
-                    if (i == 0 || s.charAt(i - 1) == '.') {
-                        if (i + query.length() == s.length() || s.charAt(i + query.length()) == '.') {
-                            return true;
+            Predicate<String> compile(String query, char separator) {
+                return s -> {
+                    int i = -1;
+                    while ((i = s.indexOf(query, i + 1)) != -1) {
+                        if (i == 0 || s.charAt(i - 1) == separator) {
+                            if (i + query.length() == s.length() || s.charAt(i + query.length()) == separator) {
+                                return true;
+                            }
                         }
                     }
-                }
-                return false;
+                    return false;
+                };
+            }
+        },
+        /**
+         * A partial match, ignoring the case of letters
+         *
+         * @see String#equalsIgnoreCase(String)
+         */
+        CONTAINS_IGNORE_CASE {
+            @Override
+            Predicate<String> compile(String query, char separator) {
+                return new IgnoreCaseSearch(query);
+            }
+        },
+        /**
+         * A partial match of a regular expression, which can be anchored using {@code ^} and {@code $}.
+         * In internal form, escaped dots ({@code \.}) match slashes ({@code /}) instead,
+         * while the {@code .} wildcard still matches any character.
+         *
+         * @see Matcher#find()
+         */
+        REGEX {
+            @Override
+            Predicate<String> compile(String query, char separator) {
+                return new RegexSearch(Pattern.compile(query), false);
+            }
+        },
+        /**
+         * A full match of a glob pattern, where {@code *} matches any characters within a word (see {@link #CONTAINS_WORD}),
+         * {@code **} matches any characters, and {@code ?} matches a single character within a word
+         */
+        GLOB {
+            @Override
+            Predicate<String> compile(String query, char separator) {
+                return new RegexSearch(Pattern.compile(globToRegex(query, separator)), true);
             }
         };
 
-        abstract boolean match(String query, String s);
+        /**
+         * @param separator the character separating words, {@code .} or {@code /} in internal form
+         * @throws IllegalArgumentException if the query isn't valid for this method
+         */
+        abstract Predicate<String> compile(String query, char separator);
+
+        /**
+         * @return whether all strings matching a query contain the query itself
+         */
+        public boolean isLiteral() {
+            return this == EXACT || this == CONTAINS || this == CONTAINS_WORD;
+        }
     }
 
     public static StringCheck getTautology() {
@@ -66,17 +122,60 @@ public static StringCheck getTautology() {
     private final Method method;
     @Nullable
     private final String query;
+    private final char separator;
+    @Nullable
+    private final Predicate<String> matcher;
 
+    /**
+     * @throws IllegalArgumentException if the query isn't valid for the given method, like an invalid regular expression
+     */
     public StringCheck(Method method, @Nullable String query) {
+        this(method, query, '.');
+    }
+
+    private StringCheck(Method method, @Nullable String query, char separator) {
         this.method = method;
-        this.query = query;// == null ? null : query.toLowerCase(Locale.ROOT);
+        this.query = query;
+        this.separator = separator;
+        this.matcher = query == null ? null : method.compile(query, separator);
+    }
+
+    /**
+     * @return this check for matching class names in internal form, like {@code java/lang/String} instead of {@code java.lang.String}
+     */
+    public StringCheck toInternalForm() {
+        if (query == null || separator == '/')
+            return this;
+        String internalQuery = method == Method.REGEX ? regexToInternalForm(query) : query.replace('.', '/');
+        return new StringCheck(method, internalQuery, '/');
+    }
+
+    public Method getMethod() {
+        return method;
+    }
+
+    /**
+     * @return the string to check against, or {@code null} if this check matches anything
+     */
+    @Nullable
+    public String getQuery() {
+        return query;
+    }
+
+    /**
+     * @return the query if all matching strings contain it, otherwise {@code null}
+     * @see Method#isLiteral()
+     */
+    @Nullable
+    public String getLiteralQuery() {
+        return method.isLiteral() ? query : null;
     }
 
     public boolean match(String s) {
-        if (this.query == null)
+        if (this.matcher == null)
             return true;
 
-        return this.method.match(this.query, s);
+        return this.matcher.test(s);
     }
 
     @Override
@@ -96,9 +195,169 @@ public String toString() {
             case CONTAINS_WORD:
                 stringBuilder.append("[w]");
                 break;
+            case CONTAINS_IGNORE_CASE:
+                stringBuilder.append("[i]");
+                break;
+            case REGEX:
+                stringBuilder.append("[r]");
+                break;
+            case GLOB:
+                stringBuilder.append("[g]");
+                break;
         }
         stringBuilder.append(query);
         return stringBuilder.toString();
     }
 
+    /**
+     * Converts the dots of a glob pattern to the given separator, quoting everything but the wildcards
+     */
+    private static String globToRegex(String glob, char separator) {
+        String word = "[^" + (separator == '.' ? "." : "/") + "]";
+        StringBuilder regex = new StringBuilder();
+        StringBuilder literal = new StringBuilder();
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            if (c == '*' || c == '?') {
+                if (literal.length() != 0) {
+                    regex.append(Pattern.quote(literal.toString()));
+                    literal.setLength(0);
+                }
+                if (c == '?') {
+                    regex.append(word);
+                } else if (i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+                    regex.append(".*");
+                    i++;
+                } else {
+                    regex.append(word).append('*');
+                }
+            } else {
+                literal.append(c == '.' ? separator : c);
+            }
+        }
+        if (literal.length() != 0)
+            regex.append(Pattern.quote(literal.toString()));
+        return regex.toString();
+    }
+
+    /**
+     * Replaces the literal dots of a regular expression by slashes,
+     * being escaped dots, dots in character classes and dots in quotes ({@code \Q...\E})
+     */
+    private static String regexToInternalForm(String regex) {
+        StringBuilder stringBuilder = new StringBuilder(regex.length());
+        boolean quoted = false;
+        int classDepth = 0;
+        for (int i = 0; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (quoted) {
+                if (c == '\\' && regex.startsWith("\\E", i)) {
+                    quoted = false;
+                    stringBuilder.append("\\E");
+                    i++;
+                } else {
+                    stringBuilder.append(c == '.' ? '/' : c);
+                }
+            } else if (c == '\\' && i + 1 < regex.length()) {
+                char escaped = regex.charAt(++i);
+                if (escaped == '.') {
+                    stringBuilder.append('/');
+                } else {
+                    quoted = escaped == 'Q';
+                    stringBuilder.append(c).append(escaped);
+                }
+            } else {
+                if (c == '[') {
+                    classDepth++;
+                } else if (c == ']' && classDepth > 0) {
+                    classDepth--;
+                }
+                stringBuilder.append(c == '.' && classDepth > 0 ? '/' : c);
+            }
+        }
+        return stringBuilder.toString();
+    }
+
+    /**
+     * A case-insensitive search using the Boyer-Moore-Horspool algorithm, with the query folded to lower case once
+     */
+    private static class IgnoreCaseSearch implements Predicate<String> {
+        private final char[] needle;
+        /**
+         * The distances to shift by per ASCII character
+         */
+        private final int[] shifts = new int[128];
+        /**
+         * The distance to shift by for any other character, as those don't have their own entry
+         */
+        private final int otherShift;
+
+        private IgnoreCaseSearch(String query) {
+            needle = new char[query.length()];
+            for (int i = 0; i < needle.length; i++) {
+                needle[i] = fold(query.charAt(i));
+            }
+
+            int otherShift = needle.length;
+            Arrays.fill(shifts, needle.length);
+            for (int i = 0; i < needle.length - 1; i++) {
+                char c = needle[i];
+                if (c < 128) {
+                    shifts[c] = needle.length - 1 - i;
+                } else {
+                    otherShift = needle.length - 1 - i;
+                }
+            }
+            this.otherShift = otherShift;
+        }
+
+        @Override
+        public boolean test(String s) {
+            int last = needle.length - 1;
+            if (last < 0)
+                return true;
+
+            int i = last;
+            while (i < s.length()) {
+                char c = fold(s.charAt(i));
+                int j = last;
+                int k = i;
+                char current = c;
+                while (current == needle[j]) {
+                    if (j == 0)
+                        return true;
+                    current = fold(s.charAt(--k));
+                    j--;
+                }
+                i += c < 128 ? shifts[c] : otherShift;
+            }
+            return false;
+        }
+
+        private static char fold(char c) {
+            if (c < 128)
+                return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+            return Character.toLowerCase(Character.toUpperCase(c));
+        }
+    }
+
+    /**
+     * A regular expression search or match, reusing a matcher per thread
+     */
+    private static class RegexSearch implements Predicate<String> {
+        private final PerThread<Matcher> matchers;
+        private final boolean fullMatch;
+
+        private RegexSearch(Pattern pattern, boolean fullMatch) {
+            this.matchers = PerThread.cache(() -> pattern.matcher(""));
+            this.fullMatch = fullMatch;
+        }
+
+        @Override
+        public boolean test(String s) {
+            Matcher matcher = matchers.get().reset(s);
+            return fullMatch ? matcher.matches() : matcher.find();
+        }
+    }
+
 }
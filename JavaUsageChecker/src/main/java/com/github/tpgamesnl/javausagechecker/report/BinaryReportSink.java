@@ -0,0 +1,208 @@
+package com.github.tpgamesnl.javausagechecker.report;
+
+import com.github.tpgamesnl.javausagechecker.ClassLocation;
+import com.github.tpgamesnl.javausagechecker.Report;
+import com.github.tpgamesnl.javausagechecker.query.Query;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.github.tpgamesnl.javausagechecker.cache.JarSymbols.readVarInt;
+import static com.github.tpgamesnl.javausagechecker.cache.JarSymbols.writeVarInt;
+
+/**
+ * A {@link ReportSink} writing reports to a file in a compact binary form,
+ * which can be {@link #read(File, List, ReportSink) read} into another sink later, like when merging shards.
+ * <p>
+ * Queries are stored by their index, and every string is only written once, after which it is referred to by its id.
+ */
+public class BinaryReportSink implements ReportSink {
+
+    private static final int MAGIC = 0x4A554352;
+    private static final int VERSION = 1;
+
+    private static final ClassLocation.Kind[] LOCATION_KINDS = ClassLocation.Kind.values();
+    private static final int END = 0xFF;
+
+    /**
+     * String references: no string, a new string written after it, or the id of a string written before plus this
+     */
+    private static final int NULL_STRING = 0;
+    private static final int NEW_STRING = 1;
+    private static final int STRING_ID_OFFSET = 2;
+
+    private final DataOutputStream out;
+    private final Map<Query, Integer> queryIds = new HashMap<>();
+    private final Map<String, Integer> stringIds = new HashMap<>();
+    @Nullable
+    private IOException writeException;
+
+    /**
+     * Writes to the given file, overwriting it.
+     *
+     * @param queries the queries of the scan, the same ones need to be passed when reading
+     */
+    public BinaryReportSink(File file, List<Query> queries) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 64 * 1024));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(queries.size());
+        for (int i = 0; i < queries.size(); i++) {
+            queryIds.put(queries.get(i), i);
+            out.writeUTF(queries.get(i).toString());
+        }
+    }
+
+    @Override
+    public synchronized void accept(Report report) {
+        if (writeException != null)
+            return;
+
+        ClassLocation location = report.getClassLocation();
+        String memberName = null;
+        String methodDescriptor = null;
+        int number = -1;
+        if (location instanceof ClassLocation.Method) {
+            ClassLocation.Method method = (ClassLocation.Method) location;
+            memberName = method.getMethodName();
+            methodDescriptor = method.getMethodDescriptor();
+            if (location instanceof ClassLocation.Method.Code) {
+                number = ((ClassLocation.Method.Code) location).getLineNumber();
+            } else if (location instanceof ClassLocation.Method.Parameter) {
+                number = ((ClassLocation.Method.Parameter) location).getIndex();
+            }
+        } else if (location instanceof ClassLocation.Field) {
+            memberName = ((ClassLocation.Field) location).getName();
+        }
+
+        Integer queryId = queryIds.get(report.getQuery());
+        if (queryId == null)
+            throw new IllegalArgumentException("Unknown query " + report.getQuery());
+
+        try {
+            out.writeByte(location.getKind().ordinal());
+            writeString(location.getJarFileName());
+            writeString(location.getClassName());
+            writeString(memberName);
+            writeString(methodDescriptor);
+            writeVarInt(out, number);
+            writeVarInt(out, queryId);
+        } catch (IOException e) {
+            writeException = e;
+        }
+    }
+
+    private void writeString(@Nullable String s) throws IOException {
+        if (s == null) {
+            writeVarInt(out, NULL_STRING);
+            return;
+        }
+        Integer id = stringIds.get(s);
+        if (id != null) {
+            writeVarInt(out, STRING_ID_OFFSET + id);
+            return;
+        }
+        stringIds.put(s, stringIds.size());
+        writeVarInt(out, NEW_STRING);
+        out.writeUTF(s);
+    }
+
+    /**
+     * Ends and closes the file
+     *
+     * @throws RuntimeException if writing failed
+     */
+    @Override
+    public synchronized void close() {
+        try {
+            if (writeException == null)
+                out.writeByte(END);
+            out.close();
+        } catch (IOException e) {
+            if (writeException == null)
+                writeException = e;
+        }
+        if (writeException != null)
+            throw new RuntimeException("Error writing reports", writeException);
+    }
+
+    /**
+     * Passes all reports in the given file to the given sink, without closing it.
+     *
+     * @param queries the queries the file was written with
+     * @return the amount of reports read
+     * @throws IOException if the file can't be read, or was written with other queries
+     */
+    public static long read(File file, List<Query> queries, ReportSink sink) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64 * 1024))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION)
+                throw new IOException("Not a report file of this version");
+
+            int queryCount = in.readInt();
+            if (queryCount != queries.size())
+                throw new IOException("Written with " + queryCount + " queries instead of " + queries.size());
+            for (Query query : queries) {
+                String written = in.readUTF();
+                if (!written.equals(query.toString()))
+                    throw new IOException("Written with query " + written + " instead of " + query);
+            }
+
+            List<String> strings = new ArrayList<>();
+            long count = 0;
+            int kind;
+            while ((kind = in.readUnsignedByte()) != END) {
+                if (kind >= LOCATION_KINDS.length)
+                    throw new IOException("Invalid location kind " + kind);
+                String jarFileName = readString(in, strings);
+                String className = readString(in, strings);
+                String memberName = readString(in, strings);
+                String methodDescriptor = readString(in, strings);
+                int number = readVarInt(in);
+                int queryId = readVarInt(in);
+                if (jarFileName == null || className == null || queryId < 0 || queryId >= queryCount)
+                    throw new IOException("Invalid report");
+
+                ClassLocation location = ClassLocation.create(LOCATION_KINDS[kind], jarFileName, className,
+                        memberName, methodDescriptor, number);
+                sink.accept(new Report(location, queries.get(queryId)));
+                count++;
+            }
+            return count;
+        }
+    }
+
+    @Nullable
+    private static String readString(DataInputStream in, List<String> strings) throws IOException {
+        int reference = readVarInt(in);
+        if (reference == NULL_STRING)
+            return null;
+        if (reference == NEW_STRING) {
+            String s = in.readUTF();
+            strings.add(s);
+            return s;
+        }
+        int id = reference - STRING_ID_OFFSET;
+        if (id < 0 || id >= strings.size())
+            throw new IOException("Invalid string id " + id);
+        return strings.get(id);
+    }
+
+    @Override
+    public String toString() {
+        return "BinaryReportSink{" +
+                "queries=" + queryIds.size() +
+                '}';
+    }
+
+}
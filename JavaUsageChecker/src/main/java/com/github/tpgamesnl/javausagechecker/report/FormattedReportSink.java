@@ -0,0 +1,197 @@
+package com.github.tpgamesnl.javausagechecker.report;
+
+import com.github.tpgamesnl.javausagechecker.Report;
+import com.github.tpgamesnl.javausagechecker.worker.PerThread;
+
+import java.io.CharArrayWriter;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * A {@link ReportSink} writing reports in a {@link ReportFormat} while they are being found.
+ * <p>
+ * Every thread collects its reports in a small batch, which is handed to a single writer thread through a bounded queue
+ * once full. The writer writes the reports through a buffer, only ever writing out whole reports at once,
+ * so other output to the same stream, like the progress printed to the console, never ends up within a report.
+ * Workers only wait for the writer while the queue is full, and reports are never all kept in memory.
+ */
+public class FormattedReportSink implements ReportSink {
+
+    private static final int BATCH_SIZE = 256;
+    private static final int QUEUE_CAPACITY = 64;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Marks the end of the batches in the queue
+     */
+    private static final List<Report> END = new ArrayList<>();
+
+    private final ReportFormat format;
+    private final OutputStream stream;
+    /**
+     * Only used by the writer thread
+     */
+    private final CharArrayWriter out = new CharArrayWriter(BUFFER_SIZE);
+    private final boolean closeStream;
+
+    private final BlockingQueue<List<Report>> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final PerThread<Batch> batches = PerThread.of(Batch::new);
+    private final Thread writerThread;
+    /**
+     * Only used by the writer thread
+     */
+    private final ReportFormat.FileUriCache fileUris = new ReportFormat.FileUriCache();
+    private volatile IOException writeException;
+
+    /**
+     * Writes to the given stream, which isn't closed afterwards.
+     */
+    public FormattedReportSink(ReportFormat format, OutputStream out) {
+        this(format, out, false);
+    }
+
+    /**
+     * Writes to the given file, overwriting it.
+     */
+    public FormattedReportSink(ReportFormat format, File file) throws FileNotFoundException {
+        this(format, new FileOutputStream(file), true);
+    }
+
+    private FormattedReportSink(ReportFormat format, OutputStream out, boolean closeStream) {
+        this.format = format;
+        this.stream = out;
+        this.closeStream = closeStream;
+
+        this.writerThread = new Thread(this::writeReports, "Report-writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    private void writeReports() {
+        long index = 0;
+        try {
+            format.writeStart(out);
+            while (true) {
+                List<Report> reports = queue.poll();
+                if (reports == null) {
+                    // Nothing to do, so write out what has been buffered before waiting
+                    flush();
+                    reports = queue.take();
+                }
+                if (reports == END) {
+                    format.writeEnd(out);
+                    flush();
+                    return;
+                }
+
+                for (Report report : reports) {
+                    format.write(out, report, index++, fileUris);
+                }
+                if (out.size() >= BUFFER_SIZE) {
+                    flush();
+                }
+            }
+        } catch (IOException e) {
+            writeException = e;
+            // Keep taking batches, so workers don't wait for a writer that has stopped
+            try {
+                List<Report> reports;
+                do {
+                    reports = queue.take();
+                } while (reports != END);
+            } catch (InterruptedException ignored) {
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writes out the buffered reports in a single write, which {@link java.io.PrintStream}s never interleave with others
+     */
+    private void flush() throws IOException {
+        if (out.size() == 0)
+            return;
+        stream.write(out.toString().getBytes(StandardCharsets.UTF_8));
+        stream.flush();
+        out.reset();
+    }
+
+    @Override
+    public void accept(Report report) {
+        Batch batch = batches.get();
+        batch.reports.add(report);
+        if (batch.reports.size() == BATCH_SIZE) {
+            List<Report> reports = batch.reports;
+            batch.reports = new ArrayList<>(BATCH_SIZE);
+            hand(reports);
+        }
+    }
+
+    private void hand(List<Report> reports) {
+        try {
+            queue.put(reports);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writes the remaining batches of all threads, waits until all reports have been written,
+     * and closes the file written to
+     *
+     * @throws RuntimeException if writing failed
+     */
+    @Override
+    public void close() {
+        for (Batch batch : batches.values()) {
+            if (!batch.reports.isEmpty()) {
+                hand(batch.reports);
+                batch.reports = new ArrayList<>();
+            }
+        }
+
+        try {
+            queue.put(END);
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        try {
+            if (closeStream) {
+                stream.close();
+            } else {
+                stream.flush();
+            }
+        } catch (IOException e) {
+            if (writeException == null)
+                writeException = e;
+        }
+        if (writeException != null)
+            throw new RuntimeException("Error writing reports", writeException);
+    }
+
+    @Override
+    public String toString() {
+        return "FormattedReportSink{" +
+                "format=" + format +
+                '}';
+    }
+
+    /**
+     * The reports of a single thread not yet handed to the writer
+     */
+    private static class Batch {
+        private List<Report> reports = new ArrayList<>(BATCH_SIZE);
+    }
+
+}
@@ -0,0 +1,258 @@
+package com.github.tpgamesnl.javausagechecker.report;
+
+import com.github.tpgamesnl.javausagechecker.ClassLocation;
+import com.github.tpgamesnl.javausagechecker.Report;
+import com.github.tpgamesnl.javausagechecker.query.Query;
+import com.github.tpgamesnl.javausagechecker.worker.PerThread;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link ReportSink} only counting the usages per query, per jar file, per class and optionally per method,
+ * instead of keeping the reports.
+ * <p>
+ * Every thread counts in its own maps, these are only merged when {@link #getCounts() requested}.
+ * {@link com.github.tpgamesnl.javausagechecker.JavaUsageChecker} {@link #count(Query, ClassLocation) counts}
+ * usages on the shared location they were found in directly, without creating reports for them.
+ */
+public class ReportAggregator implements ReportSink {
+
+    private final boolean countMethods;
+
+    private final PerThread<Map<Query, Counts>> buffers = PerThread.of(IdentityHashMap::new);
+
+    /**
+     * @param countMethods whether to count the usages per method too, besides per jar file and class
+     */
+    public ReportAggregator(boolean countMethods) {
+        this.countMethods = countMethods;
+    }
+
+    public boolean isCountingMethods() {
+        return countMethods;
+    }
+
+    @Override
+    public void accept(Report report) {
+        count(report.getQuery(), report.getClassLocation());
+    }
+
+    /**
+     * Counts a usage matching the given query.
+     *
+     * @param location the location of the usage, or the class, field or method it was found in
+     */
+    public void count(Query query, ClassLocation location) {
+        Counts counts = buffers.get().computeIfAbsent(query, q -> new Counts());
+        counts.usages++;
+        increment(counts.jars, location.getJarFileName());
+        increment(counts.classes, location.getClassName());
+
+        if (countMethods && location instanceof ClassLocation.Method) {
+            // Usages are mostly found in the same method as the one before,
+            //  so its key is only created when the method changes
+            if (location != counts.lastMethod) {
+                ClassLocation.Method method = (ClassLocation.Method) location;
+                String key = method.getClassName() + "#" + method.getMethodName() + method.getMethodDescriptor();
+                counts.lastMethod = location;
+                counts.lastMethodCounter = counts.methods.computeIfAbsent(key, k -> new Counter());
+            }
+            counts.lastMethodCounter.count++;
+        }
+    }
+
+    private static void increment(Map<String, Counter> counters, String key) {
+        Counter counter = counters.get(key);
+        if (counter == null) {
+            counter = new Counter();
+            counters.put(key, counter);
+        }
+        counter.count++;
+    }
+
+    /**
+     * Merges the counts of all threads.
+     * Should only be called once no more usages are being counted.
+     *
+     * @return the counts of every query with usages, the most used first
+     */
+    public List<QueryCount> getCounts() {
+        Map<Query, Counts> merged = new IdentityHashMap<>();
+        for (Map<Query, Counts> buffer : buffers.values()) {
+            for (Map.Entry<Query, Counts> entry : buffer.entrySet()) {
+                merged.computeIfAbsent(entry.getKey(), q -> new Counts()).add(entry.getValue());
+            }
+        }
+
+        List<QueryCount> queryCounts = new ArrayList<>();
+        for (Map.Entry<Query, Counts> entry : merged.entrySet()) {
+            Counts counts = entry.getValue();
+            queryCounts.add(new QueryCount(entry.getKey(), counts.usages, sort(counts.jars), sort(counts.classes),
+                    countMethods ? sort(counts.methods) : null));
+        }
+        queryCounts.sort((a, b) -> Long.compare(b.getUsages(), a.getUsages()));
+        return queryCounts;
+    }
+
+    private static Map<String, Long> sort(Map<String, Counter> counters) {
+        List<Map.Entry<String, Counter>> entries = new ArrayList<>(counters.entrySet());
+        entries.sort((a, b) -> {
+            int compare = Long.compare(b.getValue().count, a.getValue().count);
+            return compare != 0 ? compare : a.getKey().compareTo(b.getKey());
+        });
+
+        Map<String, Long> sorted = new LinkedHashMap<>();
+        for (Map.Entry<String, Counter> entry : entries) {
+            sorted.put(entry.getKey(), entry.getValue().count);
+        }
+        return sorted;
+    }
+
+    /**
+     * Prints a summary table of the {@link #getCounts() counts}
+     *
+     * @param limit the maximum amount of jar files, classes and methods printed per query
+     */
+    public void print(PrintStream out, int limit) {
+        List<QueryCount> queryCounts = getCounts();
+        if (queryCounts.isEmpty()) {
+            out.println("No usages found");
+            return;
+        }
+
+        for (QueryCount queryCount : queryCounts) {
+            out.println("Query: " + queryCount.getQuery());
+            out.println("  " + queryCount.getUsages() + " usages in " + queryCount.getJars().size() + " jars, "
+                    + queryCount.getClasses().size() + " classes"
+                    + (queryCount.getMethods() != null ? ", " + queryCount.getMethods().size() + " methods" : ""));
+            printTable(out, "Jar", queryCount.getJars(), limit);
+            printTable(out, "Class", queryCount.getClasses(), limit);
+            if (queryCount.getMethods() != null)
+                printTable(out, "Method", queryCount.getMethods(), limit);
+        }
+    }
+
+    private static void printTable(PrintStream out, String header, Map<String, Long> counts, int limit) {
+        out.printf("  %10s  %s%n", "Usages", header);
+        int printed = 0;
+        for (Map.Entry<String, Long> entry : counts.entrySet()) {
+            if (printed++ == limit) {
+                out.printf("  %10s  (%d more)%n", "...", counts.size() - limit);
+                break;
+            }
+            out.printf("  %10d  %s%n", entry.getValue(), entry.getKey());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ReportAggregator{" +
+                "countMethods=" + countMethods +
+                '}';
+    }
+
+    /**
+     * The merged counts of a single query
+     */
+    public static class QueryCount {
+        private final Query query;
+        private final long usages;
+        private final Map<String, Long> jars;
+        private final Map<String, Long> classes;
+        @Nullable
+        private final Map<String, Long> methods;
+
+        private QueryCount(Query query, long usages, Map<String, Long> jars, Map<String, Long> classes,
+                           @Nullable Map<String, Long> methods) {
+            this.query = query;
+            this.usages = usages;
+            this.jars = Collections.unmodifiableMap(jars);
+            this.classes = Collections.unmodifiableMap(classes);
+            this.methods = methods == null ? null : Collections.unmodifiableMap(methods);
+        }
+
+        public Query getQuery() {
+            return query;
+        }
+
+        public long getUsages() {
+            return usages;
+        }
+
+        /**
+         * @return the usages per jar file name, the most used first
+         */
+        public Map<String, Long> getJars() {
+            return jars;
+        }
+
+        /**
+         * @return the usages per class name, the most used first
+         */
+        public Map<String, Long> getClasses() {
+            return classes;
+        }
+
+        /**
+         * @return the usages per method, as {@code <class>#<name><descriptor>}, the most used first,
+         * or {@code null} if methods weren't counted
+         */
+        @Nullable
+        public Map<String, Long> getMethods() {
+            return methods;
+        }
+
+        @Override
+        public String toString() {
+            return "QueryCount{" +
+                    "query=" + query +
+                    ", usages=" + usages +
+                    ", jars=" + jars.size() +
+                    ", classes=" + classes.size() +
+                    '}';
+        }
+    }
+
+    /**
+     * The counts of a single query on a single thread
+     */
+    private static class Counts {
+        private long usages;
+        private final Map<String, Counter> jars = new HashMap<>();
+        private final Map<String, Counter> classes = new HashMap<>();
+        private final Map<String, Counter> methods = new HashMap<>();
+
+        @Nullable
+        private ClassLocation lastMethod;
+        private Counter lastMethodCounter;
+
+        private void add(Counts counts) {
+            usages += counts.usages;
+            addAll(jars, counts.jars);
+            addAll(classes, counts.classes);
+            addAll(methods, counts.methods);
+        }
+
+        private static void addAll(Map<String, Counter> counters, Map<String, Counter> other) {
+            for (Map.Entry<String, Counter> entry : other.entrySet()) {
+                counters.computeIfAbsent(entry.getKey(), k -> new Counter()).count += entry.getValue().count;
+            }
+        }
+    }
+
+    /**
+     * A mutable count, so counting doesn't box
+     */
+    private static class Counter {
+        private long count;
+    }
+
+}
@@ -0,0 +1,35 @@
+package com.github.tpgamesnl.javausagechecker.report;
+
+import com.github.tpgamesnl.javausagechecker.Report;
+import com.github.tpgamesnl.javausagechecker.worker.PerThread;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link ReportSink} collecting all reports in memory.
+ * <p>
+ * Every thread adds to its own buffer, these are only merged when {@link #getReports() requested}.
+ */
+public class ReportCollector implements ReportSink {
+
+    private final PerThread<List<Report>> buffers = PerThread.of(ArrayList::new);
+
+    @Override
+    public void accept(Report report) {
+        buffers.get().add(report);
+    }
+
+    /**
+     * Merges the reports of all threads.
+     * Should only be called once no more reports are being added.
+     */
+    public List<Report> getReports() {
+        List<Report> reports = new ArrayList<>();
+        for (List<Report> buffer : buffers.values()) {
+            reports.addAll(buffer);
+        }
+        return reports;
+    }
+
+}
@@ -0,0 +1,290 @@
+package com.github.tpgamesnl.javausagechecker.report;
+
+import com.github.tpgamesnl.javausagechecker.ClassLocation;
+import com.github.tpgamesnl.javausagechecker.Report;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Locale;
+
+/**
+ * The formats {@link FormattedReportSink} can write reports in.
+ * <p>
+ * Every report is written on its own, so formats with a surrounding document, like {@link #SARIF},
+ * write its start and end separately.
+ */
+public enum ReportFormat {
+    /**
+     * The {@link Report#toString() human-readable} form, one report per line
+     */
+    TEXT {
+        @Override
+        public void write(Writer out, Report report, long index, FileUriCache fileUris) throws IOException {
+            out.write(report.toString());
+            out.write('\n');
+        }
+    },
+    /**
+     * The {@link Report#toString() human-readable} form as a list item, prefixed with {@code "-  "},
+     * like reports are printed to the console when no format is given
+     */
+    LIST {
+        @Override
+        public void write(Writer out, Report report, long index, FileUriCache fileUris) throws IOException {
+            out.write("-  ");
+            out.write(report.toString());
+            out.write('\n');
+        }
+    },
+    /**
+     * One JSON object per line, leaving out the fields that don't apply to the location
+     */
+    JSON_LINES {
+        @Override
+        public void write(Writer out, Report report, long index, FileUriCache fileUris) throws IOException {
+            Fields fields = new Fields(report);
+            out.write("{\"jar\":");
+            writeJsonString(out, fields.jarFileName);
+            out.write(",\"class\":");
+            writeJsonString(out, fields.className);
+            out.write(",\"kind\":");
+            writeJsonString(out, fields.kind);
+            if (fields.memberName != null) {
+                out.write(fields.methodDescriptor != null ? ",\"method\":" : ",\"field\":");
+                writeJsonString(out, fields.memberName);
+            }
+            if (fields.methodDescriptor != null) {
+                out.write(",\"descriptor\":");
+                writeJsonString(out, fields.methodDescriptor);
+            }
+            if (fields.lineNumber != -1) {
+                out.write(",\"line\":" + fields.lineNumber);
+            }
+            if (fields.parameterIndex != -1) {
+                out.write(",\"parameter\":" + fields.parameterIndex);
+            }
+            out.write(",\"query\":");
+            writeJsonString(out, report.getQuery().toString());
+            out.write("}\n");
+        }
+    },
+    /**
+     * Comma-separated values with a header row, quoted where needed
+     */
+    CSV {
+        @Override
+        public void writeStart(Writer out) throws IOException {
+            out.write("jar,class,kind,member,descriptor,line,parameter,query\n");
+        }
+
+        @Override
+        public void write(Writer out, Report report, long index, FileUriCache fileUris) throws IOException {
+            Fields fields = new Fields(report);
+            writeCsvValue(out, fields.jarFileName);
+            out.write(',');
+            writeCsvValue(out, fields.className);
+            out.write(',');
+            writeCsvValue(out, fields.kind);
+            out.write(',');
+            writeCsvValue(out, fields.memberName);
+            out.write(',');
+            writeCsvValue(out, fields.methodDescriptor);
+            out.write(',');
+            if (fields.lineNumber != -1)
+                out.write(Integer.toString(fields.lineNumber));
+            out.write(',');
+            if (fields.parameterIndex != -1)
+                out.write(Integer.toString(fields.parameterIndex));
+            out.write(',');
+            writeCsvValue(out, report.getQuery().toString());
+            out.write('\n');
+        }
+    },
+    /**
+     * A SARIF 2.1.0 log with a single run, with a result per report.
+     * Results are located in their jar file, and logically in their class and member.
+     */
+    SARIF {
+        @Override
+        public void writeStart(Writer out) throws IOException {
+            out.write("{\"version\":\"2.1.0\",");
+            out.write("\"$schema\":\"https://json.schemastore.org/sarif-2.1.0.json\",");
+            out.write("\"runs\":[{\"tool\":{\"driver\":{\"name\":\"JavaUsageChecker\"}},\"results\":[\n");
+        }
+
+        @Override
+        public void write(Writer out, Report report, long index, FileUriCache fileUris) throws IOException {
+            Fields fields = new Fields(report);
+            if (index != 0)
+                out.write(",\n");
+
+            String query = report.getQuery().toString();
+            out.write("{\"ruleId\":\"usage\",\"level\":\"note\",\"message\":{\"text\":");
+            writeJsonString(out, "Usage matching " + query);
+            out.write("},\"locations\":[{\"physicalLocation\":{\"artifactLocation\":{\"uri\":");
+            writeJsonString(out, fileUris.toFileUri(fields.jarFileName));
+            out.write("}},\"logicalLocations\":[{\"fullyQualifiedName\":");
+            String name = fields.className;
+            if (fields.memberName != null) {
+                name += "." + fields.memberName;
+                if (fields.methodDescriptor != null)
+                    name += fields.methodDescriptor;
+            }
+            writeJsonString(out, name);
+            out.write(",\"kind\":");
+            writeJsonString(out, fields.methodDescriptor != null ? "function" : fields.memberName != null ? "member" : "type");
+            out.write("}]}],\"properties\":{\"kind\":");
+            writeJsonString(out, fields.kind);
+            if (fields.lineNumber != -1) {
+                out.write(",\"line\":" + fields.lineNumber);
+            }
+            if (fields.parameterIndex != -1) {
+                out.write(",\"parameter\":" + fields.parameterIndex);
+            }
+            out.write(",\"query\":");
+            writeJsonString(out, query);
+            out.write("}}");
+        }
+
+        @Override
+        public void writeEnd(Writer out) throws IOException {
+            out.write("\n]}]}\n");
+        }
+    };
+
+    /**
+     * Writes what comes before the first report, even if there are none
+     */
+    public void writeStart(Writer out) throws IOException {
+    }
+
+    /**
+     * @param index the amount of reports written before this one
+     * @param fileUris the cache of the converted file names of the writer
+     */
+    public abstract void write(Writer out, Report report, long index, FileUriCache fileUris) throws IOException;
+
+    /**
+     * Writes what comes after the last report
+     */
+    public void writeEnd(Writer out) throws IOException {
+    }
+
+    private static String createFileUri(String fileName) {
+        String path = new File(fileName).getAbsolutePath().replace(File.separatorChar, '/');
+        if (!path.startsWith("/"))
+            path = "/" + path;
+        try {
+            return new URI("file", null, path, null).toASCIIString();
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException("Invalid file name " + fileName, e);
+        }
+    }
+
+    private static void writeJsonString(Writer out, String s) throws IOException {
+        out.write('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"':
+                    out.write("\\\"");
+                    break;
+                case '\\':
+                    out.write("\\\\");
+                    break;
+                case '\n':
+                    out.write("\\n");
+                    break;
+                case '\r':
+                    out.write("\\r");
+                    break;
+                case '\t':
+                    out.write("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        out.write(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.write(c);
+                    }
+            }
+        }
+        out.write('"');
+    }
+
+    private static void writeCsvValue(Writer out, @Nullable String s) throws IOException {
+        if (s == null)
+            return;
+        boolean quote = false;
+        for (int i = 0; i < s.length() && !quote; i++) {
+            char c = s.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            out.write(s);
+            return;
+        }
+        out.write('"');
+        out.write(s.replace("\"", "\"\""));
+        out.write('"');
+    }
+
+    /**
+     * The fields of the location of a report, {@code null} or {@code -1} if they don't apply
+     */
+    private static class Fields {
+        private final String jarFileName;
+        private final String className;
+        private final String kind;
+        @Nullable
+        private String memberName;
+        @Nullable
+        private String methodDescriptor;
+        private int lineNumber = -1;
+        private int parameterIndex = -1;
+
+        private Fields(Report report) {
+            ClassLocation location = report.getClassLocation();
+            jarFileName = location.getJarFileName();
+            className = location.getClassName();
+            kind = location.getKind().name().toLowerCase(Locale.ROOT);
+
+            if (location instanceof ClassLocation.Method) {
+                ClassLocation.Method method = (ClassLocation.Method) location;
+                memberName = method.getMethodName();
+                methodDescriptor = method.getMethodDescriptor();
+                if (location instanceof ClassLocation.Method.Code) {
+                    lineNumber = ((ClassLocation.Method.Code) location).getLineNumber();
+                } else if (location instanceof ClassLocation.Method.Parameter) {
+                    parameterIndex = ((ClassLocation.Method.Parameter) location).getIndex();
+                }
+            } else if (location instanceof ClassLocation.Field) {
+                memberName = ((ClassLocation.Field) location).getName();
+            }
+        }
+    }
+
+    /**
+     * Converts file names to {@code file:} URIs, without accessing the files like {@link File#toURI()} does.
+     * Keeps the last file name converted and its URI, as reports mostly come in groups of the same jar file.
+     * Not thread-safe: every writer should have its own.
+     */
+    public static class FileUriCache {
+        @Nullable
+        private String lastFileName;
+        private String lastFileUri;
+
+        public String toFileUri(String fileName) {
+            if (!fileName.equals(lastFileName)) {
+                lastFileUri = createFileUri(fileName);
+                lastFileName = fileName;
+            }
+            return lastFileUri;
+        }
+    }
+
+}
@@ -0,0 +1,20 @@
+package com.github.tpgamesnl.javausagechecker.report;
+
+import com.github.tpgamesnl.javausagechecker.Report;
+
+/**
+ * Receives {@link Report}s as soon as they are found.
+ * <p>
+ * Reports are passed from multiple threads at once, so implementations must be thread-safe.
+ */
+@FunctionalInterface
+public interface ReportSink {
+
+    void accept(Report report);
+
+    /**
+     * Called once all reports have been passed.
+     */
+    default void close() { }
+
+}
@@ -0,0 +1,188 @@
+package com.github.tpgamesnl.javausagechecker.shard;
+
+import com.github.tpgamesnl.javausagechecker.Main;
+import com.github.tpgamesnl.javausagechecker.query.Query;
+import com.github.tpgamesnl.javausagechecker.report.BinaryReportSink;
+import com.github.tpgamesnl.javausagechecker.report.ReportSink;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Scans a corpus with multiple local processes, each scanning one shard of the {@link ShardPlan}.
+ * <p>
+ * Every shard process runs {@link Main} with the arguments of the scan, plus its shard and a file to write its reports
+ * to with a {@link BinaryReportSink}. The progress the shards print is combined into a single progress line,
+ * and once all shards are done their reports are merged into a single sink.
+ */
+public class ShardCoordinator {
+
+    private static final int PROGRESS_FIELDS = 5;
+
+    private final List<String> arguments;
+    private final int shardCount;
+    private final List<Query> queries;
+    private final PrintStream log;
+
+    /**
+     * @param arguments the arguments of the scan passed to every shard process,
+     *                  without arguments choosing the output or shards
+     * @param queries the queries of the scan, parsed from the arguments
+     * @param log the stream to print the progress to
+     */
+    public ShardCoordinator(List<String> arguments, int shardCount, List<Query> queries, PrintStream log) {
+        this.arguments = arguments;
+        this.shardCount = shardCount;
+        this.queries = queries;
+        this.log = log;
+    }
+
+    /**
+     * Runs all shards, and passes their reports to the given sink without closing it.
+     *
+     * @throws IOException if a shard process can't be started, fails or its reports can't be read
+     */
+    public void run(ReportSink reportSink) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        File directory = Files.createTempDirectory("javausagechecker-shards").toFile();
+        List<File> reportFiles = new ArrayList<>();
+        List<Process> processes = new ArrayList<>();
+        List<Thread> readers = new ArrayList<>();
+        AtomicLongArray progress = new AtomicLongArray(shardCount * PROGRESS_FIELDS);
+
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Shard-progress");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            for (int shard = 0; shard < shardCount; shard++) {
+                File reportFile = new File(directory, "shard-" + shard + ".bin");
+                reportFiles.add(reportFile);
+
+                Process process = new ProcessBuilder(createCommand(shard, reportFile))
+                        .redirectError(ProcessBuilder.Redirect.INHERIT)
+                        .start();
+                processes.add(process);
+
+                int shardIndex = shard;
+                Thread reader = new Thread(() -> readOutput(shardIndex, process, progress), "Shard-" + shard + "-reader");
+                reader.setDaemon(true);
+                reader.start();
+                readers.add(reader);
+            }
+            log.println("Started " + shardCount + " shard processes");
+
+            executor.scheduleAtFixedRate(() -> printProgress(start, processes, progress), 1, 1, TimeUnit.SECONDS);
+
+            List<String> failures = new ArrayList<>();
+            for (int shard = 0; shard < shardCount; shard++) {
+                int exitCode = processes.get(shard).waitFor();
+                readers.get(shard).join();
+                if (exitCode != 0)
+                    failures.add("shard " + shard + " exited with code " + exitCode);
+            }
+            executor.shutdown();
+            if (!failures.isEmpty())
+                throw new IOException("Not all shards succeeded: " + String.join(", ", failures));
+
+            long mergeStart = System.nanoTime();
+            long reportCount = 0;
+            for (File reportFile : reportFiles) {
+                reportCount += BinaryReportSink.read(reportFile, queries, reportSink);
+            }
+            long end = System.nanoTime();
+
+            log.println(String.format(Locale.ROOT, "Checked %d classes (%.1f MB) of %d jars in %d shards in %.2f s",
+                    sum(progress, 2), sum(progress, 4) / 1e6, sum(progress, 0), shardCount, (end - start) / 1e9));
+            log.println(String.format(Locale.ROOT, "  Merged %d reports in %.2f s", reportCount, (end - mergeStart) / 1e9));
+        } finally {
+            executor.shutdownNow();
+            for (Process process : processes) {
+                process.destroy();
+            }
+            for (File reportFile : reportFiles) {
+                Files.deleteIfExists(reportFile.toPath());
+            }
+            Files.deleteIfExists(directory.toPath());
+        }
+    }
+
+    /**
+     * @return the command running the given shard in a new JVM, with the same JVM options and class path as this one
+     */
+    private List<String> createCommand(int shard, File reportFile) {
+        List<String> command = new ArrayList<>();
+        command.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getPath());
+        command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(Main.class.getName());
+        command.addAll(arguments);
+        command.add("shard:" + shard + "/" + shardCount);
+        command.add("shardout:" + reportFile.getPath());
+        return command;
+    }
+
+    /**
+     * Keeps the latest progress printed by the given shard, passing on any other output
+     */
+    private void readOutput(int shard, Process process, AtomicLongArray progress) {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                long[] numbers = ShardProgress.parse(line);
+                if (numbers == null) {
+                    log.println("[shard " + shard + "] " + line);
+                    continue;
+                }
+                for (int i = 0; i < PROGRESS_FIELDS; i++) {
+                    progress.set(shard * PROGRESS_FIELDS + i, numbers[i]);
+                }
+            }
+        } catch (IOException e) {
+            new RuntimeException("Error reading the output of shard " + shard, e).printStackTrace();
+        }
+    }
+
+    private void printProgress(long start, List<Process> processes, AtomicLongArray progress) {
+        int done = 0;
+        for (Process process : processes) {
+            if (!process.isAlive())
+                done++;
+        }
+        log.println(String.format(Locale.ROOT, "[%.1f s] %d/%d shards done: %d/%d jars opened, %d/%d classes checked (%.1f MB)",
+                (System.nanoTime() - start) / 1e9, done, shardCount, sum(progress, 0), sum(progress, 1),
+                sum(progress, 2), sum(progress, 3), sum(progress, 4) / 1e6));
+    }
+
+    private long sum(AtomicLongArray progress, int field) {
+        long sum = 0;
+        for (int shard = 0; shard < shardCount; shard++) {
+            sum += progress.get(shard * PROGRESS_FIELDS + field);
+        }
+        return sum;
+    }
+
+    @Override
+    public String toString() {
+        return "ShardCoordinator{" +
+                "arguments=" + arguments +
+                ", shardCount=" + shardCount +
+                '}';
+    }
+
+}
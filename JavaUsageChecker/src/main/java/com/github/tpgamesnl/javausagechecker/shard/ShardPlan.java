@@ -0,0 +1,148 @@
+package com.github.tpgamesnl.javausagechecker.shard;
+
+import com.github.tpgamesnl.javausagechecker.jar.ArchiveFilter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Splits the jar files of a scan into shards of about the same total size, each scanned by its own process.
+ * <p>
+ * The split only depends on the files and their sizes, so every process computes the same shards by itself,
+ * given the same scanned files and directories.
+ */
+public class ShardPlan {
+
+    private final List<List<File>> shards;
+    private final long[] shardSizes;
+
+    private ShardPlan(List<List<File>> shards, long[] shardSizes) {
+        this.shards = shards;
+        this.shardSizes = shardSizes;
+    }
+
+    /**
+     * Expands the given files and directories to the jar files in them, like a scan would, and splits those.
+     *
+     * @param archiveFilter the filter deciding which files in directories are scanned
+     */
+    public static ShardPlan create(List<File> files, ArchiveFilter archiveFilter, int shardCount) throws IOException {
+        return split(expand(files, archiveFilter), shardCount);
+    }
+
+    /**
+     * @return the given files, with directories replaced by the jar files in them, sorted by path
+     */
+    public static List<File> expand(List<File> files, ArchiveFilter archiveFilter) throws IOException {
+        Set<File> jarFiles = new HashSet<>();
+        Set<Object> walkedDirectories = new HashSet<>();
+        for (File file : files) {
+            if (!file.isDirectory()) {
+                jarFiles.add(file);
+                continue;
+            }
+
+            Files.walkFileTree(file.toPath(), EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    Object key = attrs.fileKey();
+                    return key == null || walkedDirectories.add(key) ? FileVisitResult.CONTINUE : FileVisitResult.SKIP_SUBTREE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    try {
+                        if (attrs.isRegularFile() && archiveFilter.accept(file)) {
+                            jarFiles.add(file.toFile());
+                        }
+                    } catch (IOException e) {
+                        return visitFileFailed(file, e);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    System.err.println("Skipping " + file + " (" + e + ")");
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        }
+
+        List<File> sorted = new ArrayList<>(jarFiles);
+        Collections.sort(sorted);
+        return sorted;
+    }
+
+    /**
+     * Assigns every file, the largest first, to the shard with the smallest total size so far
+     */
+    public static ShardPlan split(List<File> files, int shardCount) {
+        if (shardCount <= 0)
+            throw new IllegalArgumentException("Shard count must be positive: " + shardCount);
+
+        List<File> bySize = new ArrayList<>(files);
+        bySize.sort(Comparator.comparingLong(File::length).reversed().thenComparing(Comparator.naturalOrder()));
+
+        List<List<File>> shards = new ArrayList<>(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            shards.add(new ArrayList<>());
+        }
+        long[] shardSizes = new long[shardCount];
+        for (File file : bySize) {
+            int smallest = 0;
+            for (int i = 1; i < shardCount; i++) {
+                if (shardSizes[i] < shardSizes[smallest])
+                    smallest = i;
+            }
+            shards.get(smallest).add(file);
+            shardSizes[smallest] += file.length();
+        }
+        return new ShardPlan(shards, shardSizes);
+    }
+
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    /**
+     * @param shard the index of the shard, starting at {@code 0}
+     */
+    public List<File> getFiles(int shard) {
+        return shards.get(shard);
+    }
+
+    /**
+     * @return the total size of the files of the given shard, in bytes
+     */
+    public long getSize(int shard) {
+        return shardSizes[shard];
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sizes = new StringBuilder();
+        for (int i = 0; i < shards.size(); i++) {
+            if (i != 0)
+                sizes.append(", ");
+            sizes.append(shards.get(i).size()).append(" files (").append(shardSizes[i] / 1_000_000).append(" MB)");
+        }
+        return "ShardPlan{" +
+                "shards=[" + sizes + "]" +
+                '}';
+    }
+
+}
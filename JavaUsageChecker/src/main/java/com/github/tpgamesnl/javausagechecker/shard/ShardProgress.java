@@ -0,0 +1,81 @@
+package com.github.tpgamesnl.javausagechecker.shard;
+
+import com.github.tpgamesnl.javausagechecker.JavaUsageChecker;
+import com.github.tpgamesnl.javausagechecker.metrics.ScanMetrics;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.PrintStream;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The progress of a shard, printed by the shard process as machine-readable lines for the {@link ShardCoordinator}:
+ * {@code progress <jars opened> <jars found> <classes checked> <classes found> <bytes read>}.
+ */
+public class ShardProgress implements Closeable {
+
+    static final String PREFIX = "progress ";
+
+    public static ShardProgress start(JavaUsageChecker javaUsageChecker, PrintStream out, long intervalMillis) {
+        ShardProgress progress = new ShardProgress(javaUsageChecker.getMetrics(), out);
+        progress.executor.scheduleAtFixedRate(progress::print, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        return progress;
+    }
+
+    private final ScanMetrics metrics;
+    private final PrintStream out;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "Shard-progress");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private ShardProgress(ScanMetrics metrics, PrintStream out) {
+        this.metrics = metrics;
+        this.out = out;
+    }
+
+    private void print() {
+        out.println(PREFIX + metrics.getJarsOpened() + " " + metrics.getJarsFound() + " "
+                + metrics.getClassesChecked() + " " + metrics.getClassesFound() + " " + metrics.getBytesRead());
+        out.flush();
+    }
+
+    /**
+     * Stops printing the progress, after printing it a last time
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        print();
+    }
+
+    /**
+     * @return the numbers of the given progress line, or {@code null} if it isn't one
+     */
+    @Nullable
+    static long[] parse(String line) {
+        if (!line.startsWith(PREFIX))
+            return null;
+        String[] parts = line.substring(PREFIX.length()).split(" ");
+        if (parts.length != 5)
+            return null;
+        long[] numbers = new long[parts.length];
+        try {
+            for (int i = 0; i < parts.length; i++) {
+                numbers[i] = Long.parseLong(parts[i]);
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return numbers;
+    }
+
+}
@@ -0,0 +1,141 @@
+package com.github.tpgamesnl.javausagechecker.worker;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A work-stealing {@link Scheduler} backed by a {@link ForkJoinPool}.
+ * <p>
+ * Subtasks are forked onto the deque of the forking thread, from which idle threads steal them.
+ * {@link #fork(Collection)} waits for the subtasks to finish, helping to run them in the meantime.
+ * {@link #joinAsync(Runnable)} runs its callback on the thread finishing the last task, so no thread waits for it.
+ */
+public class ForkJoinScheduler implements Scheduler {
+
+    private final ForkJoinPool pool;
+    private final boolean ownsPool;
+
+    private final AtomicInteger pendingTasks = new AtomicInteger();
+    private final Object lock = new Object();
+    private final AtomicReference<Runnable> joinCallback = new AtomicReference<>();
+
+    public ForkJoinScheduler(int threadCount) {
+        this(new ForkJoinPool(threadCount), true);
+    }
+
+    /**
+     * Creates a scheduler running on the given pool, which will not be shut down once joined.
+     */
+    public ForkJoinScheduler(ForkJoinPool pool) {
+        this(pool, false);
+    }
+
+    private ForkJoinScheduler(ForkJoinPool pool, boolean ownsPool) {
+        this.pool = pool;
+        this.ownsPool = ownsPool;
+    }
+
+    @Override
+    public void submit(Task task) {
+        pendingTasks.incrementAndGet();
+
+        ForkJoinTask<?> forkJoinTask = ForkJoinTask.adapt(() -> {
+            try {
+                perform(task);
+            } finally {
+                taskFinished();
+            }
+        });
+        if (isInPool()) {
+            forkJoinTask.fork();
+        } else {
+            pool.execute(forkJoinTask);
+        }
+    }
+
+    @Override
+    public void fork(Collection<? extends Task> subtasks) {
+        if (!isInPool()) {
+            for (Task subtask : subtasks) {
+                perform(subtask);
+            }
+            return;
+        }
+
+        List<ForkJoinTask<?>> forkJoinTasks = new ArrayList<>(subtasks.size());
+        for (Task subtask : subtasks) {
+            forkJoinTasks.add(ForkJoinTask.adapt(() -> perform(subtask)));
+        }
+        ForkJoinTask.invokeAll(forkJoinTasks);
+    }
+
+    private boolean isInPool() {
+        return ForkJoinTask.inForkJoinPool() && ForkJoinTask.getPool() == pool;
+    }
+
+    private static void perform(Task task) {
+        try {
+            task.perform();
+        } catch (Throwable e) {
+            new RuntimeException("Task " + task + " threw an exception", e).printStackTrace();
+        }
+    }
+
+    private void taskFinished() {
+        if (pendingTasks.decrementAndGet() == 0) {
+            synchronized (lock) {
+                lock.notifyAll();
+            }
+            runJoinCallback();
+        }
+    }
+
+    @Override
+    public void join() {
+        synchronized (lock) {
+            while (pendingTasks.get() != 0) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }
+
+        if (ownsPool) {
+            pool.shutdown();
+        }
+    }
+
+    @Override
+    public void joinAsync(Runnable callback) {
+        joinCallback.set(callback);
+        // The last task may have finished before the callback was set
+        if (pendingTasks.get() == 0) {
+            runJoinCallback();
+        }
+    }
+
+    private void runJoinCallback() {
+        // Both the last task and joinAsync may get here, only one of them runs the callback
+        Runnable callback = joinCallback.getAndSet(null);
+        if (callback == null)
+            return;
+
+        if (ownsPool) {
+            pool.shutdown();
+        }
+        callback.run();
+    }
+
+    @Override
+    public int getQueuedTaskCount() {
+        return (int) Math.min(Integer.MAX_VALUE, pool.getQueuedTaskCount() + pool.getQueuedSubmissionCount());
+    }
+
+}
@@ -0,0 +1,72 @@
+package com.github.tpgamesnl.javausagechecker.worker;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * A value per thread, like a {@link ThreadLocal}, but held by this object instead of by the threads.
+ * <p>
+ * Scans may run on a pool shared with other scans, of which the threads outlive every scan.
+ * The values of a {@link ThreadLocal} stay on those threads after the scan is done,
+ * while these are released together with the scan holding them.
+ */
+public class PerThread<T> {
+
+    /**
+     * @return values kept until this object is released, such as buffers that are merged once all threads are done
+     */
+    public static <T> PerThread<T> of(Supplier<? extends T> initial) {
+        return new PerThread<>(initial, false);
+    }
+
+    /**
+     * @return values that can be created again, which are dropped once their thread has died,
+     * for objects outliving the threads that use them
+     */
+    public static <T> PerThread<T> cache(Supplier<? extends T> initial) {
+        return new PerThread<>(initial, true);
+    }
+
+    private final Map<Thread, T> values = new ConcurrentHashMap<>();
+    private final Supplier<? extends T> initial;
+    private final boolean dropDeadThreads;
+
+    private PerThread(Supplier<? extends T> initial, boolean dropDeadThreads) {
+        this.initial = initial;
+        this.dropDeadThreads = dropDeadThreads;
+    }
+
+    /**
+     * @return the value of the current thread, created if it has none yet
+     */
+    public T get() {
+        Thread thread = Thread.currentThread();
+        T value = values.get(thread);
+        if (value == null) {
+            if (dropDeadThreads) {
+                values.keySet().removeIf(other -> !other.isAlive());
+            }
+            // Only this thread adds its own value
+            value = initial.get();
+            values.put(thread, value);
+        }
+        return value;
+    }
+
+    /**
+     * @return the values of all threads so far, which may still be used by their threads
+     */
+    public Collection<T> values() {
+        return values.values();
+    }
+
+    @Override
+    public String toString() {
+        return "PerThread{" +
+                "threads=" + values.size() +
+                '}';
+    }
+
+}
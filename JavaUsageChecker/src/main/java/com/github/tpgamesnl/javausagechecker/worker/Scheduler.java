@@ -0,0 +1,60 @@
+package com.github.tpgamesnl.javausagechecker.worker;
+
+import java.util.Collection;
+
+/**
+ * Runs {@link Task}s on a set of threads.
+ * <p>
+ * Top-level tasks are {@link #submit(Task) submitted}, these can {@link #fork(Collection) fork} subtasks while running.
+ * A scheduler is used for a single run, and can't be used anymore after it has been {@link #join() joined}.
+ */
+public interface Scheduler {
+
+    /**
+     * Creates a scheduler for a single run
+     */
+    @FunctionalInterface
+    interface Factory {
+
+        Scheduler create(int threadCount, int queueCapacity);
+
+    }
+
+    /**
+     * Schedules the given top-level task.
+     * May be called from within a running task, but not from other threads after {@link #join()} has been called.
+     */
+    void submit(Task task);
+
+    /**
+     * Schedules subtasks of the task currently running on the calling thread.
+     * Depending on the implementation, this may wait for the subtasks to finish.
+     */
+    void fork(Collection<? extends Task> subtasks);
+
+    /**
+     * Waits until all submitted tasks and their subtasks have finished.
+     */
+    void join();
+
+    /**
+     * Runs the given callback once all submitted tasks and their subtasks have finished, without waiting for it.
+     * Like {@link #join()}, no more top-level tasks may be submitted from other threads once called.
+     * <p>
+     * By default, this joins on a thread of its own.
+     */
+    default void joinAsync(Runnable callback) {
+        Thread joiner = new Thread(() -> {
+            join();
+            callback.run();
+        }, "Scheduler-joiner");
+        joiner.setDaemon(true);
+        joiner.start();
+    }
+
+    /**
+     * @return an estimate of the amount of tasks and subtasks waiting to be run, for monitoring
+     */
+    int getQueuedTaskCount();
+
+}
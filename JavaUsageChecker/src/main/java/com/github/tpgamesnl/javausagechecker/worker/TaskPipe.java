@@ -0,0 +1,103 @@
+package com.github.tpgamesnl.javausagechecker.worker;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded hand-off between producers and the {@link Worker}s consuming its tasks.
+ * <p>
+ * Producers block in {@link #put(Task)} while the pipe is full,
+ * consumers block in {@link #next()} while it is empty and not yet {@link #close() closed}.
+ */
+public class TaskPipe<T extends Task> implements TaskSource<T> {
+
+    private final Queue<T> queue = new ArrayDeque<>();
+    private final int capacity;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private boolean closed;
+
+    public TaskPipe(int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        this.capacity = capacity;
+    }
+
+    /**
+     * Adds a task, waiting while the pipe is full.
+     *
+     * @throws IllegalStateException if the pipe has been closed
+     */
+    public void put(T task) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (queue.size() >= capacity && !closed) {
+                notFull.await();
+            }
+            if (closed)
+                throw new IllegalStateException("Pipe is closed");
+
+            queue.add(task);
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Closes this pipe: no more tasks can be added,
+     * and consumers receive {@code null} once the remaining tasks have been taken.
+     */
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            notEmpty.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    @Nullable
+    public T next() {
+        lock.lock();
+        try {
+            while (queue.isEmpty()) {
+                if (closed)
+                    return null;
+                notEmpty.await();
+            }
+
+            T task = queue.poll();
+            notFull.signal();
+            return task;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+}
@@ -0,0 +1,32 @@
+package com.github.tpgamesnl.javausagechecker.worker;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Queue;
+
+/**
+ * A source of tasks for {@link Worker}s.
+ */
+@FunctionalInterface
+public interface TaskSource<T extends Task> {
+
+    /**
+     * Returns a source polling from the given queue, synchronizing on the queue.
+     */
+    static <T extends Task> TaskSource<T> of(Queue<T> queue) {
+        return () -> {
+            synchronized (queue) {
+                return queue.poll();
+            }
+        };
+    }
+
+    /**
+     * Gets the next task, possibly waiting for one to become available.
+     *
+     * @return the next task, or {@code null} if this source is exhausted
+     */
+    @Nullable
+    T next();
+
+}
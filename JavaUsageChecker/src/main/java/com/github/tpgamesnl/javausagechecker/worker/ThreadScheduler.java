@@ -0,0 +1,97 @@
+package com.github.tpgamesnl.javausagechecker.worker;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A {@link Scheduler} with two {@link WorkerCollection}s: one for top-level tasks and one for subtasks.
+ * Subtasks are handed over through a bounded {@link TaskPipe}, so forking waits while that pipe is full.
+ */
+public class ThreadScheduler implements Scheduler {
+
+    private final TaskPipe<Task> tasks = new TaskPipe<>(Integer.MAX_VALUE);
+    private final TaskPipe<Task> subtasks;
+    private final AtomicInteger pendingTasks = new AtomicInteger();
+    private volatile boolean joining;
+
+    private final WorkerCollection<Task> taskWorkers;
+    private final WorkerCollection<Task> subtaskWorkers;
+
+    public ThreadScheduler(int threadCount, int queueCapacity, String taskWorkerPrefix, String subtaskWorkerPrefix) {
+        this.subtasks = new TaskPipe<>(queueCapacity);
+        this.taskWorkers = WorkerCollection.create(threadCount, taskWorkerPrefix, tasks).start();
+        this.subtaskWorkers = WorkerCollection.create(threadCount, subtaskWorkerPrefix, subtasks).start();
+    }
+
+    @Override
+    public void submit(Task task) {
+        pendingTasks.incrementAndGet();
+        try {
+            tasks.put(new TopLevelTask(task));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            taskFinished();
+        }
+    }
+
+    @Override
+    public void fork(Collection<? extends Task> subtasks) {
+        try {
+            for (Task subtask : subtasks) {
+                this.subtasks.put(subtask);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void taskFinished() {
+        // Top-level tasks can only be submitted from running top-level tasks once joining,
+        //  so no new tasks can arrive once the pending amount reaches zero
+        if (pendingTasks.decrementAndGet() == 0 && joining) {
+            tasks.close();
+        }
+    }
+
+    @Override
+    public void join() {
+        joining = true;
+        if (pendingTasks.get() == 0) {
+            tasks.close();
+        }
+
+        taskWorkers.join();
+        subtasks.close();
+        subtaskWorkers.join();
+    }
+
+    @Override
+    public int getQueuedTaskCount() {
+        return tasks.size() + subtasks.size();
+    }
+
+    private class TopLevelTask implements Task {
+
+        private final Task task;
+
+        private TopLevelTask(Task task) {
+            this.task = task;
+        }
+
+        @Override
+        public void perform() {
+            try {
+                task.perform();
+            } finally {
+                taskFinished();
+            }
+        }
+
+        @Override
+        public String toString() {
+            return task.toString();
+        }
+
+    }
+
+}
@@ -1,23 +1,18 @@
 package com.github.tpgamesnl.javausagechecker.worker;
 
-import java.util.Queue;
-
 public class Worker<T extends Task> extends Thread {
 
-    private final Queue<T> taskQueue;
+    private final TaskSource<T> taskSource;
 
-    public Worker(Queue<T> taskQueue, String name) {
+    public Worker(TaskSource<T> taskSource, String name) {
         super(name);
-        this.taskQueue = taskQueue;
+        this.taskSource = taskSource;
     }
 
     @Override
     public void run() {
         while (!isInterrupted()) {
-            T task;
-            synchronized (taskQueue) {
-                task = taskQueue.poll();
-            }
+            T task = taskSource.next();
             if (task == null) {
                 return;
             }
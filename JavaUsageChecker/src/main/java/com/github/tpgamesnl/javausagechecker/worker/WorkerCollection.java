@@ -7,10 +7,14 @@
 public class WorkerCollection<T extends Task> {
 
     public static <T extends Task> WorkerCollection<T> create(int workerAmount, String prefix, Queue<T> queue) {
+        return create(workerAmount, prefix, TaskSource.of(queue));
+    }
+
+    public static <T extends Task> WorkerCollection<T> create(int workerAmount, String prefix, TaskSource<T> taskSource) {
         List<Worker<T>> workers = new ArrayList<>();
         for (int i = 0; i < workerAmount; i++) {
             String name = prefix + (i + 1);
-            Worker<T> worker = new Worker<>(queue, name);
+            Worker<T> worker = new Worker<>(taskSource, name);
             workers.add(worker);
         }
         return new WorkerCollection<>(workers);
@@ -0,0 +1,133 @@
+package com.github.tpgamesnl.javausagechecker.cache;
+
+import com.github.tpgamesnl.javausagechecker.ClassLocation;
+import com.github.tpgamesnl.javausagechecker.UsageListener;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class JarSymbolsTest {
+
+    private static final String JAR = "test.jar";
+
+    @Test
+    void readsWrittenSymbols() throws IOException {
+        JarSymbols read = read(write(createSymbols()));
+
+        assertEquals(1, read.getClassCount());
+        assertEquals(2, read.getEventCount());
+        assertEquals(replay(createSymbols()), replay(read));
+    }
+
+    @Test
+    void rejectsNegativeCounts() {
+        byte[] bytes = write(createSymbols());
+
+        // Class count, string count
+        assertThrows(IOException.class, () -> read(withInt(bytes, 1, -1)));
+        assertThrows(IOException.class, () -> read(withInt(bytes, 5, -1)));
+    }
+
+    @Test
+    void rejectsCountsBeyondTheInput() {
+        byte[] bytes = write(createSymbols());
+
+        // Runs out of input instead of allocating all strings up front
+        assertThrows(IOException.class, () -> read(withInt(bytes, 5, Integer.MAX_VALUE)));
+    }
+
+    @Test
+    void rejectsInvalidEvents() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeBoolean(true);
+        out.writeInt(1);
+        out.writeInt(1);
+        out.writeUTF("a/A");
+        out.writeInt(11);
+        // A class usage with a string id beyond the string table
+        int[] event = {JarSymbols.EVENT_CLASS_USAGE, ClassLocation.Kind.CLASS.ordinal(), 0, -1, -1, -1, 0, 1, -1, -1, 0};
+        for (int value : event) {
+            JarSymbols.writeVarInt(out, value);
+        }
+        out.flush();
+
+        assertThrows(IOException.class, () -> read(bytes.toByteArray()));
+    }
+
+    private static JarSymbols createSymbols() {
+        JarSymbols.Recorder recorder = new JarSymbols.Recorder(new UsageListener() {
+            @Override
+            public void reportMethodAccess(ClassLocation.Method method, int lineNumber, int opcode, String owner, String name, String descriptor, boolean isInterface) {
+            }
+
+            @Override
+            public void reportFieldAccess(ClassLocation.Method method, int lineNumber, int opcode, String owner, String name, String descriptor) {
+            }
+
+            @Override
+            public void reportClassUsage(ClassLocation parent, ClassLocation.Kind kind, int number, String name) {
+            }
+        });
+        ClassLocation.Method method = (ClassLocation.Method) ClassLocation.create(ClassLocation.Kind.METHOD,
+                JAR, "a.A", "run", "()V", -1);
+        recorder.reportMethodAccess(method, 12, 182, "java/lang/Object", "toString", "()Ljava/lang/String;", false);
+        recorder.reportClassUsage(new ClassLocation(JAR, "a.A"), ClassLocation.Kind.EXTENDS_CLASS, -1, "java/lang/Thread");
+
+        JarSymbols jarSymbols = new JarSymbols(true);
+        jarSymbols.add(recorder);
+        return jarSymbols;
+    }
+
+    private static List<String> replay(JarSymbols jarSymbols) {
+        List<String> usages = new ArrayList<>();
+        jarSymbols.replay(new UsageListener() {
+            @Override
+            public void reportMethodAccess(ClassLocation.Method method, int lineNumber, int opcode, String owner, String name, String descriptor, boolean isInterface) {
+                usages.add(method + ":" + lineNumber + " " + owner + "." + name + descriptor);
+            }
+
+            @Override
+            public void reportFieldAccess(ClassLocation.Method method, int lineNumber, int opcode, String owner, String name, String descriptor) {
+                usages.add(method + ":" + lineNumber + " " + owner + "." + name);
+            }
+
+            @Override
+            public void reportClassUsage(ClassLocation parent, ClassLocation.Kind kind, int number, String name) {
+                usages.add(parent + " " + kind + " " + name);
+            }
+        }, JAR, false);
+        return usages;
+    }
+
+    private static byte[] write(JarSymbols jarSymbols) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            jarSymbols.write(out);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static JarSymbols read(byte[] bytes) throws IOException {
+        return JarSymbols.read(new DataInputStream(new ByteArrayInputStream(bytes)));
+    }
+
+    private static byte[] withInt(byte[] bytes, int offset, int value) {
+        byte[] copy = bytes.clone();
+        ByteBuffer.wrap(copy).putInt(offset, value);
+        return copy;
+    }
+
+}
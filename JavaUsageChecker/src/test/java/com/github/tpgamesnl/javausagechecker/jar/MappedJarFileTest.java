@@ -0,0 +1,305 @@
+package com.github.tpgamesnl.javausagechecker.jar;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MappedJarFileTest {
+
+    private static final byte[] HELLO = "Hello, world! Hello, world! Hello, world!".getBytes(StandardCharsets.UTF_8);
+
+    private final MappedJarFile.Buffers buffers = new MappedJarFile.Buffers();
+
+    @AfterEach
+    void closeBuffers() {
+        buffers.close();
+    }
+
+    @Test
+    void readsStoredEntries() throws IOException {
+        MappedJarFile jarFile = open(new ZipBuilder().add("hello.txt", HELLO, false).build());
+
+        MappedJarFile.Entry entry = single(jarFile);
+        assertEquals("hello.txt", entry.getName());
+        assertEquals(HELLO.length, entry.getSize());
+        assertContents(HELLO, jarFile.read(entry, buffers), entry);
+    }
+
+    @Test
+    void readsDeflatedEntries() throws IOException {
+        MappedJarFile jarFile = open(new ZipBuilder().add("hello.txt", HELLO, true).build());
+
+        MappedJarFile.Entry entry = single(jarFile);
+        assertContents(HELLO, jarFile.read(entry, buffers), entry);
+        assertContents(HELLO, jarFile.readVerified(entry, buffers), entry);
+    }
+
+    @Test
+    void readsJarFilesOfZipOutputStream() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream out = new ZipOutputStream(bytes)) {
+            out.putNextEntry(new ZipEntry("dir/"));
+            out.putNextEntry(new ZipEntry("dir/hello.txt"));
+            out.write(HELLO);
+        }
+        MappedJarFile jarFile = open(bytes.toByteArray());
+
+        assertEquals(2, jarFile.getEntries().size());
+        MappedJarFile.Entry entry = jarFile.getEntries().get(1);
+        assertEquals("dir/hello.txt", entry.getName());
+        assertContents(HELLO, jarFile.readVerified(entry, buffers), entry);
+    }
+
+    @Test
+    void readsZip64EndOfCentralDirectory() throws IOException {
+        // ZipOutputStream only writes a zip64 end of central directory for this many entries
+        int entryCount = 0xFFFF + 1;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream out = new ZipOutputStream(bytes)) {
+            for (int i = 0; i < entryCount; i++) {
+                out.putNextEntry(new ZipEntry(i + ".txt"));
+            }
+            out.putNextEntry(new ZipEntry("hello.txt"));
+            out.write(HELLO);
+        }
+        MappedJarFile jarFile = open(bytes.toByteArray());
+
+        assertEquals(entryCount + 1, jarFile.getEntries().size());
+        MappedJarFile.Entry entry = jarFile.getEntries().get(entryCount);
+        assertContents(HELLO, jarFile.read(entry, buffers), entry);
+    }
+
+    @Test
+    void readsZip64ExtraFields() throws IOException {
+        ZipBuilder builder = new ZipBuilder().add("hello.txt", HELLO, true);
+        builder.zip64(HELLO.length, builder.compressedSizes[0], 0);
+        MappedJarFile jarFile = open(builder.build());
+
+        MappedJarFile.Entry entry = single(jarFile);
+        assertEquals(HELLO.length, entry.getSize());
+        assertContents(HELLO, jarFile.read(entry, buffers), entry);
+    }
+
+    @Test
+    void rejectsNegativeZip64Values() {
+        ZipBuilder negativeSize = new ZipBuilder().add("hello.txt", HELLO, true);
+        negativeSize.zip64(-1, negativeSize.compressedSizes[0], 0);
+        assertThrows(IOException.class, () -> open(negativeSize.build()));
+
+        ZipBuilder negativeCompressedSize = new ZipBuilder().add("hello.txt", HELLO, true);
+        negativeCompressedSize.zip64(HELLO.length, Long.MIN_VALUE, 0);
+        assertThrows(IOException.class, () -> open(negativeCompressedSize.build()));
+
+        ZipBuilder negativeOffset = new ZipBuilder().add("hello.txt", HELLO, true);
+        negativeOffset.zip64(HELLO.length, negativeOffset.compressedSizes[0], -30);
+        assertThrows(IOException.class, () -> open(negativeOffset.build()));
+    }
+
+    @Test
+    void rejectsShortZip64ExtraFields() {
+        ZipBuilder builder = new ZipBuilder().add("hello.txt", HELLO, true);
+        builder.zip64(HELLO.length, builder.compressedSizes[0], 0);
+        builder.zip64Length = 8;
+        assertThrows(IOException.class, () -> open(builder.build()));
+    }
+
+    @Test
+    void rejectsTruncatedJarFiles() throws IOException {
+        byte[] bytes = new ZipBuilder().add("hello.txt", HELLO, true).build();
+
+        // Without an end of central directory
+        assertThrows(IOException.class, () -> open(Arrays.copyOf(bytes, bytes.length - 10)));
+        assertThrows(IOException.class, () -> open(new byte[0]));
+
+        // With data cut off, keeping the central directory
+        ZipBuilder builder = new ZipBuilder().add("hello.txt", HELLO, true);
+        builder.zip64(HELLO.length, 100_000, 0);
+        MappedJarFile jarFile = open(builder.build());
+        MappedJarFile.Entry entry = single(jarFile);
+        assertThrows(IOException.class, () -> jarFile.read(entry, buffers));
+    }
+
+    @Test
+    void rejectsEntriesExceedingTheJarFile() throws IOException {
+        // The end of the data would overflow an int
+        ZipBuilder builder = new ZipBuilder().add("inner.jar", HELLO, false);
+        builder.zip64(Integer.MAX_VALUE - 8, Integer.MAX_VALUE - 8, 0);
+        MappedJarFile jarFile = open(builder.build());
+        MappedJarFile.Entry entry = single(jarFile);
+        assertThrows(IOException.class, () -> jarFile.openNested(entry, buffers));
+    }
+
+    @Test
+    void rejectsCorruptEntries() throws IOException {
+        byte[] bytes = new ZipBuilder().add("hello.txt", HELLO, false).build();
+        // Within the stored data, so only the CRC-32 tells
+        bytes[30 + "hello.txt".length()] ^= 1;
+        MappedJarFile jarFile = open(bytes);
+
+        MappedJarFile.Entry entry = single(jarFile);
+        jarFile.read(entry, buffers);
+        assertThrows(IOException.class, () -> jarFile.readVerified(entry, buffers));
+    }
+
+    @Test
+    void opensNestedJarFiles() throws IOException {
+        byte[] inner = new ZipBuilder().add("hello.txt", HELLO, true).build();
+        MappedJarFile outer = open(new ZipBuilder()
+                .add("stored.jar", inner, false)
+                .add("deflated.jar", inner, true)
+                .build());
+
+        for (MappedJarFile.Entry nestedEntry : outer.getEntries()) {
+            MappedJarFile nested = outer.openNested(nestedEntry, buffers);
+            assertEquals("outer.jar!/" + nestedEntry.getName(), nested.getName());
+
+            MappedJarFile.Entry entry = single(nested);
+            assertContents(HELLO, nested.readVerified(entry, buffers), entry);
+        }
+    }
+
+    @Test
+    void rejectsReadsOnceClosed() throws IOException {
+        MappedJarFile jarFile = open(new ZipBuilder().add("hello.txt", HELLO, false).build());
+        MappedJarFile.Entry entry = single(jarFile);
+        jarFile.close();
+
+        assertThrows(IOException.class, () -> jarFile.read(entry, buffers));
+    }
+
+    private static MappedJarFile open(byte[] bytes) throws IOException {
+        return new MappedJarFile("outer.jar", ByteBuffer.wrap(bytes));
+    }
+
+    private static MappedJarFile.Entry single(MappedJarFile jarFile) {
+        assertEquals(1, jarFile.getEntries().size());
+        return jarFile.getEntries().get(0);
+    }
+
+    private static void assertContents(byte[] expected, byte[] buffer, MappedJarFile.Entry entry) {
+        assertArrayEquals(expected, Arrays.copyOf(buffer, entry.getSize()));
+    }
+
+    /**
+     * Writes zip files by hand, so their headers can hold values {@link ZipOutputStream} never writes
+     */
+    private static class ZipBuilder {
+
+        private final ByteArrayOutputStream data = new ByteArrayOutputStream();
+        private final ByteArrayOutputStream centralDirectory = new ByteArrayOutputStream();
+        private int entryCount;
+        private final long[] compressedSizes = new long[16];
+
+        /**
+         * The zip64 values of the last entry, written once it is built
+         */
+        private long[] zip64;
+        private int zip64Length = 24;
+        private byte[] lastCentralHeader;
+
+        ZipBuilder add(String name, byte[] contents, boolean deflate) {
+            flushCentralHeader();
+            byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+            byte[] compressed = deflate ? deflate(contents) : contents;
+            CRC32 crc = new CRC32();
+            crc.update(contents);
+            int method = deflate ? 8 : 0;
+            int offset = data.size();
+            compressedSizes[entryCount++] = compressed.length;
+
+            ByteBuffer local = header(30 + nameBytes.length);
+            local.putInt(0x04034b50).putShort((short) 20).putShort((short) 0).putShort((short) method)
+                    .putInt(0).putInt((int) crc.getValue()).putInt(compressed.length).putInt(contents.length)
+                    .putShort((short) nameBytes.length).putShort((short) 0).put(nameBytes);
+            data.write(local.array(), 0, local.capacity());
+            data.write(compressed, 0, compressed.length);
+
+            ByteBuffer central = header(46 + nameBytes.length);
+            central.putInt(0x02014b50).putShort((short) 20).putShort((short) 20).putShort((short) 0)
+                    .putShort((short) method).putInt(0).putInt((int) crc.getValue())
+                    .putInt(compressed.length).putInt(contents.length)
+                    .putShort((short) nameBytes.length).putShort((short) 0).putShort((short) 0)
+                    .putShort((short) 0).putShort((short) 0).putInt(0).putInt(offset).put(nameBytes);
+            lastCentralHeader = central.array();
+            zip64 = null;
+            return this;
+        }
+
+        /**
+         * Moves the sizes and offset of the last entry into a zip64 extra field
+         */
+        void zip64(long size, long compressedSize, long localHeaderOffset) {
+            zip64 = new long[]{size, compressedSize, localHeaderOffset};
+        }
+
+        byte[] build() {
+            flushCentralHeader();
+            int directoryOffset = data.size();
+            byte[] directory = centralDirectory.toByteArray();
+            ByteBuffer end = header(22);
+            end.putInt(0x06054b50).putShort((short) 0).putShort((short) 0)
+                    .putShort((short) entryCount).putShort((short) entryCount)
+                    .putInt(directory.length).putInt(directoryOffset).putShort((short) 0);
+
+            ByteArrayOutputStream zip = new ByteArrayOutputStream();
+            zip.write(data.toByteArray(), 0, data.size());
+            zip.write(directory, 0, directory.length);
+            zip.write(end.array(), 0, end.capacity());
+            return zip.toByteArray();
+        }
+
+        private void flushCentralHeader() {
+            if (lastCentralHeader == null)
+                return;
+
+            byte[] header = lastCentralHeader;
+            byte[] extra = new byte[0];
+            if (zip64 != null) {
+                ByteBuffer headerBuffer = ByteBuffer.wrap(header).order(ByteOrder.LITTLE_ENDIAN);
+                headerBuffer.putInt(20, -1).putInt(24, -1).putInt(42, -1);
+                headerBuffer.putShort(30, (short) (4 + zip64Length));
+
+                ByteBuffer extraBuffer = header(4 + Math.max(zip64Length, 24));
+                extraBuffer.putShort((short) 0x0001).putShort((short) zip64Length)
+                        .putLong(zip64[0]).putLong(zip64[1]).putLong(zip64[2]);
+                extra = Arrays.copyOf(extraBuffer.array(), 4 + zip64Length);
+            }
+            centralDirectory.write(header, 0, header.length);
+            centralDirectory.write(extra, 0, extra.length);
+            lastCentralHeader = null;
+        }
+
+        private static ByteBuffer header(int size) {
+            return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        private static byte[] deflate(byte[] contents) {
+            Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+            deflater.setInput(contents);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            deflater.end();
+            return out.toByteArray();
+        }
+
+    }
+
+}